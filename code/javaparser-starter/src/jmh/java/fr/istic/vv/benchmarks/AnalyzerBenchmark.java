@@ -0,0 +1,77 @@
+package fr.istic.vv.benchmarks;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import fr.istic.vv.Exercise4.PrivateFieldAnalyzer;
+import fr.istic.vv.Exercise5.CyclomaticComplexityCalculator;
+import fr.istic.vv.Exercise6.ClassCohesionCalculator;
+import fr.istic.vv.PublicElementsPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chaque analyse appliquée aux AST déjà parsés du corpus, pour isoler son coût de
+ * celui du parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    private final CyclomaticComplexityCalculator complexityCalculator = new CyclomaticComplexityCalculator();
+    private final ClassCohesionCalculator cohesionCalculator = new ClassCohesionCalculator();
+    private final PublicElementsPrinter printer = new PublicElementsPrinter();
+
+    @Benchmark
+    public int cyclomaticComplexity(CorpusState corpus) {
+        int total = 0;
+        for (MethodDeclaration method : corpus.declarations) {
+            total += complexityCalculator.calculateComplexity(method);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double cohesion(CorpusState corpus) {
+        double total = 0;
+        for (ClassOrInterfaceDeclaration type : corpus.types) {
+            total += cohesionCalculator.calculateCohesion(type);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void dependencies(CorpusState corpus, Blackhole blackhole) {
+        for (ClassOrInterfaceDeclaration type : corpus.types) {
+            blackhole.consume(cohesionCalculator.findDependencies(type));
+        }
+    }
+
+    @Benchmark
+    public void privateFieldsWithoutGetters(CorpusState corpus, Blackhole blackhole) {
+        for (CompilationUnit unit : corpus.units) {
+            blackhole.consume(PrivateFieldAnalyzer.findPrivateFieldsWithoutGetters(unit));
+        }
+    }
+
+    @Benchmark
+    public void publicElements(CorpusState corpus, Blackhole blackhole) {
+        for (CompilationUnit unit : corpus.units) {
+            blackhole.consume(printer.analyze(unit));
+        }
+    }
+}
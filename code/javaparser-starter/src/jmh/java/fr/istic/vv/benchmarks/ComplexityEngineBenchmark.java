@@ -0,0 +1,97 @@
+package fr.istic.vv.benchmarks;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import fr.istic.vv.Exercise5.ComplexityVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'ancien calcul de complexité cyclomatique (six appels à findAll par méthode)
+ * au parcours unique de {@link ComplexityVisitor} sur une CompilationUnit déjà parsée.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexityEngineBenchmark {
+
+    @Param({"20"})
+    public int methods;
+
+    @Param({"3"})
+    public int depth;
+
+    private CompilationUnit unit;
+    private List<MethodDeclaration> declarations;
+
+    @Setup
+    public void setUp() {
+        StringBuilder source = new StringBuilder("public class Generated {\n");
+        for (int m = 0; m < methods; m++) {
+            source.append("    public int m").append(m).append("(int a, int b) {\n");
+            for (int d = 0; d < depth; d++) {
+                source.append("if (a > ").append(d).append(" && b < a) { for (int i = 0; i < a; i++) { while (b > i) { b--; } }\n");
+            }
+            for (int d = 0; d < depth; d++) {
+                source.append("}\n");
+            }
+            source.append("switch (a) { case 1: return b; case 2: return a; default: break; }\n");
+            source.append("return a > b ? a : b;\n    }\n");
+        }
+        source.append("}\n");
+        unit = StaticJavaParser.parse(source.toString());
+        declarations = unit.findAll(MethodDeclaration.class);
+    }
+
+    @Benchmark
+    public int legacyFindAll() {
+        int total = 0;
+        for (MethodDeclaration method : declarations) {
+            total += legacyComplexity(method);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int singlePassVisitor() {
+        int[] total = new int[1];
+        ComplexityVisitor.computeAll(unit, (method, complexity) -> total[0] += complexity);
+        return total[0];
+    }
+
+    /**
+     * L'implémentation d'origine de CyclomaticComplexityCalculator.calculateComplexity.
+     */
+    private static int legacyComplexity(MethodDeclaration method) {
+        int complexity = 1;
+        complexity += method.findAll(IfStmt.class).size();
+        complexity += method.findAll(ForStmt.class).size();
+        complexity += method.findAll(WhileStmt.class).size();
+        complexity += method.findAll(DoStmt.class).size();
+        complexity += method.findAll(SwitchEntry.class).size();
+        complexity += method.findAll(ConditionalExpr.class).size();
+        return complexity;
+    }
+}
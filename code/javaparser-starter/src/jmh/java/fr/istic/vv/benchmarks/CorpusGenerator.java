@@ -0,0 +1,135 @@
+package fr.istic.vv.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Génère un projet Java synthétique et déterministe pour les benchmarks :
+ * {@code files} fichiers de {@code classes} classes, chacune avec des champs privés,
+ * des getters et {@code methods} méthodes dont les structures de contrôle sont
+ * imbriquées sur {@code depth} niveaux. Les mêmes paramètres donnent toujours
+ * le même corpus, ce qui rend les mesures reproductibles hors ligne.
+ */
+public final class CorpusGenerator {
+
+    private static final int FILES_PER_PACKAGE = 100;
+
+    private CorpusGenerator() {
+    }
+
+    /**
+     * Écrit le corpus dans un répertoire.
+     *
+     * @return Le répertoire racine du corpus.
+     */
+    public static Path generate(Path root, int files, int classes, int methods, int depth) throws IOException {
+        for (int f = 0; f < files; f++) {
+            String packageName = "gen.p" + (f / FILES_PER_PACKAGE);
+            Path dir = root.resolve(packageName.replace('.', '/'));
+            Files.createDirectories(dir);
+            String fileName = "File" + f;
+            Files.write(dir.resolve(fileName + ".java"),
+                    fileSource(packageName, fileName, classes, methods, depth).getBytes(StandardCharsets.UTF_8));
+        }
+        return root;
+    }
+
+    /**
+     * Le contenu d'un fichier : une classe publique suivie de classes secondaires.
+     */
+    public static String fileSource(String packageName, String fileName, int classes, int methods, int depth) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(";\n\n");
+        source.append("import java.util.List;\nimport java.util.Map;\n\n");
+        for (int c = 0; c < classes; c++) {
+            String className = c == 0 ? fileName : fileName + "Helper" + c;
+            appendClass(source, className, c == 0, methods, depth);
+        }
+        return source.toString();
+    }
+
+    private static void appendClass(StringBuilder source, String className, boolean isPublic, int methods, int depth) {
+        if (isPublic) {
+            source.append("public ");
+        }
+        source.append("class ").append(className).append(" {\n");
+        source.append("    private int count;\n");
+        source.append("    private String name, label;\n");
+        source.append("    private boolean enabled;\n");
+        source.append("    private List<String> values;\n");
+        source.append("    private Map<String, Integer> index;\n\n");
+        source.append("    public int getCount() {\n        return count;\n    }\n\n");
+        source.append("    public boolean isEnabled() {\n        return enabled;\n    }\n\n");
+        for (int m = 0; m < methods; m++) {
+            appendMethod(source, m, depth);
+        }
+        source.append("}\n\n");
+    }
+
+    private static void appendMethod(StringBuilder source, int m, int depth) {
+        source.append("    public int compute").append(m).append("(int a, String b) {\n");
+        source.append("        int result = this.count + a;\n");
+        for (int d = 0; d < depth; d++) {
+            indent(source, d + 2);
+            switch (d % 4) {
+                case 0:
+                    source.append("if (a > ").append(d).append(" && enabled) {\n");
+                    break;
+                case 1:
+                    source.append("for (int i").append(d).append(" = 0; i").append(d).append(" < a; i").append(d).append("++) {\n");
+                    break;
+                case 2:
+                    source.append("while (result < ").append(d * 10).append(" || b == null) {\n");
+                    break;
+                default:
+                    source.append("for (String v").append(d).append(" : values) {\n");
+                    break;
+            }
+        }
+        indent(source, depth + 2);
+        source.append("result += b == null ? index.size() : b.length();\n");
+        for (int d = depth - 1; d >= 0; d--) {
+            indent(source, d + 2);
+            source.append("}\n");
+        }
+        source.append("        switch (result % 3) {\n");
+        source.append("            case 0: return result;\n");
+        source.append("            case 1: return -result;\n");
+        source.append("            default: return name.length();\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+    }
+
+    private static void indent(StringBuilder source, int level) {
+        for (int i = 0; i < level; i++) {
+            source.append("    ");
+        }
+    }
+
+    /**
+     * Supprime un corpus généré.
+     */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.out.println("Usage: java CorpusGenerator <output-dir> <files> <classes> <methods> <depth>");
+            return;
+        }
+        Path root = generate(Paths.get(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+        System.out.println("Corpus generated in: " + root);
+    }
+}
@@ -0,0 +1,65 @@
+package fr.istic.vv.benchmarks;
+
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.utils.SourceRoot;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Un corpus synthétique généré sur le disque puis parsé une fois, partagé par les
+ * benchmarks d'une même exécution. Sa taille se règle avec les paramètres JMH, par
+ * exemple {@code -p files=1000 -p methods=50}.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param({"50"})
+    public int files;
+
+    @Param({"2"})
+    public int classes;
+
+    @Param({"10"})
+    public int methods;
+
+    @Param({"3"})
+    public int depth;
+
+    public Path root;
+    public List<CompilationUnit> units;
+    public List<ClassOrInterfaceDeclaration> types;
+    public List<MethodDeclaration> declarations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = CorpusGenerator.generate(Files.createTempDirectory("jmhcorpus"), files, classes, methods, depth);
+        units = new ArrayList<>();
+        for (ParseResult<CompilationUnit> result : new SourceRoot(root).tryToParse()) {
+            result.ifSuccessful(units::add);
+        }
+        types = new ArrayList<>();
+        declarations = new ArrayList<>();
+        for (CompilationUnit unit : units) {
+            types.addAll(unit.findAll(ClassOrInterfaceDeclaration.class));
+            declarations.addAll(unit.findAll(MethodDeclaration.class));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        CorpusGenerator.delete(root);
+    }
+}
@@ -0,0 +1,34 @@
+package fr.istic.vv.benchmarks;
+
+import com.github.javaparser.utils.SourceRoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing complet du corpus par SourceRoot, séquentiel puis parallélisé.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Benchmark
+    public int sourceRootSequential(CorpusState corpus) throws IOException {
+        return new SourceRoot(corpus.root).tryToParse().size();
+    }
+
+    @Benchmark
+    public int sourceRootParallelized(CorpusState corpus) {
+        return new SourceRoot(corpus.root).tryToParseParallelized().size();
+    }
+}
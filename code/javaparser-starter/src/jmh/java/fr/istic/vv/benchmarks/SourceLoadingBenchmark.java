@@ -0,0 +1,134 @@
+package fr.istic.vv.benchmarks;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.utils.SourceRoot;
+import fr.istic.vv.analysis.CharArrayProvider;
+import fr.istic.vv.analysis.SourceFiles;
+import fr.istic.vv.analysis.SourceReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Chargement des sources du corpus : une chaîne par fichier, comme SourceRoot et
+ * l'ancien pipeline, contre les tampons réutilisés de {@link SourceReader} et la
+ * découverte parallèle de {@link SourceFiles}, avec puis sans parsing.
+ * <p>
+ * Chaque mesure est un passage complet sur le corpus. Avec {@code -p pageCache=cold},
+ * le cache de pages du système est vidé avant chaque itération, ce qui demande les
+ * droits d'écriture sur {@code /proc/sys/vm/drop_caches} (root, Linux) ; sinon un
+ * avertissement est affiché et les mesures sont en fait à chaud.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SourceLoadingBenchmark {
+
+    private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+    @Param({"2000"})
+    public int files;
+
+    @Param({"warm", "cold"})
+    public String pageCache;
+
+    private Path root;
+    private final SourceReader reader = new SourceReader();
+    private final JavaParser parser = new JavaParser();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = CorpusGenerator.generate(Files.createTempDirectory("jmhsources"), files, 2, 10, 3);
+    }
+
+    @Setup(Level.Iteration)
+    public void dropPageCache() throws IOException, InterruptedException {
+        if (!pageCache.equals("cold")) {
+            return;
+        }
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        try {
+            Files.write(DROP_CACHES, "1".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            System.err.println("Unable to drop the page cache, measuring with a warm cache: " + e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        CorpusGenerator.delete(root);
+    }
+
+    private List<Path> walk() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public long loadStringPerFile() throws IOException {
+        long chars = 0;
+        for (Path file : walk()) {
+            chars += new String(Files.readAllBytes(file), StandardCharsets.UTF_8).length();
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public long loadPooledBuffers() throws IOException {
+        long chars = 0;
+        for (Path file : SourceFiles.discover(root, ForkJoinPool.commonPool())) {
+            reader.read(file);
+            reader.decode();
+            chars += reader.length();
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public int parseSourceRoot() throws IOException {
+        return new SourceRoot(root).tryToParse().size();
+    }
+
+    @Benchmark
+    public int parsePooledBuffers() throws IOException {
+        int units = 0;
+        for (Path file : SourceFiles.discover(root, ForkJoinPool.commonPool())) {
+            reader.read(file);
+            char[] source = reader.decode();
+            ParseResult<CompilationUnit> result = parser.parse(ParseStart.COMPILATION_UNIT,
+                    new CharArrayProvider(source, reader.length()));
+            if (result.isSuccessful()) {
+                units++;
+            }
+        }
+        return units;
+    }
+}
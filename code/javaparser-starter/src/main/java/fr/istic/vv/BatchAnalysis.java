@@ -0,0 +1,450 @@
+package fr.istic.vv;
+
+import fr.istic.vv.Exercise5.CyclomaticComplexityCalculator;
+import fr.istic.vv.Exercise6.ClassCohesionCalculator;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.SourceFiles;
+import fr.istic.vv.report.ReportFormat;
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.DoubleHistogram;
+import fr.istic.vv.stats.IntHistogram;
+import fr.istic.vv.stats.QuantileSketch;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Analyse en lot des projets listés dans un manifeste : un chemin de projet par
+ * ligne, relatif au répertoire du manifeste ; les lignes vides et celles qui
+ * commencent par '#' sont ignorées.
+ * <p>
+ * Tous les projets partagent un même pool de threads, et donc les parsers de chaque
+ * thread. Plusieurs projets sont analysés en même temps : leurs fichiers s'entrelacent
+ * dans le pool, si bien que les petits projets occupent les threads laissés libres
+ * par la fin d'un grand. Les projets sont lancés du plus gros au plus petit parmi
+ * ceux que la mémoire permet de lancer : chacun réserve une estimation de la mémoire
+ * qu'occuperont ses résultats, et aucun projet n'est lancé tant que la réservation
+ * dépasserait le budget ou que le tas vivant le dépasse déjà.
+ * <p>
+ * Chaque projet a son propre rapport dans le répertoire de sortie ; le rapport
+ * combiné (sur la sortie standard par défaut) résume chaque projet et fusionne les
+ * histogrammes de complexité et de cohésion de tous les projets.
+ */
+public class BatchAnalysis {
+
+    /**
+     * Estimation de la mémoire occupée par les résultats accumulés d'un projet,
+     * par octet de source.
+     */
+    private static final long RETAINED_BYTES_PER_SOURCE_BYTE = 2;
+
+    private static final String ALL_PROJECTS = "all projects";
+
+    private final PipelineSettings settings;
+    private final Path outputDirectory;
+    private final ReportFormat format;
+    private final boolean aggregatesOnly;
+    private Path cacheDirectory;
+    private int concurrentProjects;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    private final List<Project> projects = new ArrayList<>();
+    private final List<Project> pending = new ArrayList<>();
+    private long reserved;
+    private int running;
+    private int peakRunning;
+
+    private final IntHistogram complexities = new IntHistogram();
+    private final QuantileSketch cohesionQuantiles = new QuantileSketch();
+    private DoubleHistogram cohesions;
+
+    BatchAnalysis(PipelineSettings settings, Path outputDirectory, ReportFormat format, boolean aggregatesOnly) {
+        this.settings = settings;
+        this.outputDirectory = outputDirectory;
+        this.format = format;
+        this.aggregatesOnly = aggregatesOnly;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java BatchAnalysis <manifest> --output-dir <directory> "
+                    + PipelineSettings.USAGE.replace("[--cache <cache-file>] ", "").replace(" [--quarantine <file>]", "")
+                    + " [--projects <count>] [--memory-budget <MiB>] [--cache-dir <directory>]"
+                    + " [--format text|jsonl|csv|binary] [--output <combined-report-file>] [--aggregates-only]");
+            System.exit(1);
+        }
+
+        PipelineSettings settings = new PipelineSettings();
+        Path outputDirectory = null;
+        Path cacheDirectory = null;
+        ReportFormat reportFormat = ReportFormat.TEXT;
+        Path reportFile = null;
+        boolean aggregatesOnly = false;
+        int concurrentProjects = 0;
+        long memoryBudget = 0;
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--cache")) {
+                System.err.println("--cache is per project: use --cache-dir <directory>");
+                System.exit(1);
+            }
+            if (args[i].equals("--quarantine")) {
+                System.err.println("--quarantine is per project: quarantine lists are kept in --cache-dir <directory>");
+                System.exit(1);
+            }
+            int consumed = settings.parseOption(args, i);
+            if (consumed >= 0) {
+                i = consumed;
+                continue;
+            }
+            switch (args[i]) {
+                case "--output-dir":
+                    outputDirectory = Paths.get(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--cache-dir":
+                    cacheDirectory = Paths.get(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--projects":
+                    concurrentProjects = Integer.parseInt(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--memory-budget":
+                    memoryBudget = Long.parseLong(PipelineSettings.optionValue(args, ++i)) * 1024 * 1024;
+                    break;
+                case "--format":
+                    reportFormat = ReportFormat.parse(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--output":
+                    reportFile = Paths.get(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--aggregates-only":
+                    aggregatesOnly = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+        if (outputDirectory == null) {
+            System.err.println("Provide the directory of the per-project reports with --output-dir");
+            System.exit(1);
+        }
+
+        BatchAnalysis batch = new BatchAnalysis(settings, outputDirectory, reportFormat, aggregatesOnly);
+        batch.cacheDirectory = cacheDirectory;
+        batch.concurrentProjects = concurrentProjects;
+        if (memoryBudget > 0) {
+            batch.memoryBudget = memoryBudget;
+        }
+        batch.readManifest(Paths.get(args[0]));
+        try (ReportSink sink = reportFormat.open(reportFile)) {
+            sink.setElementsEnabled(!aggregatesOnly);
+            batch.run(sink);
+        }
+    }
+
+    /**
+     * Un projet du manifeste et le résumé de son analyse.
+     */
+    private static final class Project {
+        final String name;
+        final Path root;
+        long files;
+        long sourceBytes;
+        long reservation;
+        long methods;
+        long classes;
+        long wallNanos;
+        String error;
+
+        Project(String name, Path root) {
+            this.name = name;
+            this.root = root;
+        }
+    }
+
+    /**
+     * Lit le manifeste. Deux projets de même nom de répertoire sont distingués par un suffixe.
+     */
+    void readManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        Set<String> names = new HashSet<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Path root = base.resolve(line).normalize();
+            String name = root.getFileName() == null ? "root" : root.getFileName().toString();
+            if (Files.isDirectory(root)) {
+                // Un lien symbolique vers le projet serait parcouru comme un simple fichier
+                root = root.toRealPath();
+            }
+            String unique = name;
+            for (int suffix = 2; !names.add(unique); suffix++) {
+                unique = name + "-" + suffix;
+            }
+            projects.add(new Project(unique, root));
+        }
+    }
+
+    /**
+     * Analyse tous les projets puis écrit le rapport combiné.
+     */
+    void run(ReportSink sink) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Files.createDirectories(outputDirectory);
+        if (cacheDirectory != null) {
+            Files.createDirectories(cacheDirectory);
+        }
+        for (Project project : projects) {
+            measure(project);
+            if (project.error == null) {
+                project.reservation = Math.min(memoryBudget, project.sourceBytes * RETAINED_BYTES_PER_SOURCE_BYTE);
+                pending.add(project);
+            }
+        }
+        // Du plus gros au plus petit : les petits projets comblent la fin des grands
+        pending.sort((a, b) -> Long.compare(b.sourceBytes, a.sourceBytes));
+
+        ForkJoinPool pool = settings.threads > 0 ? new ForkJoinPool(settings.threads) : new ForkJoinPool();
+        int workers = concurrentProjects > 0 ? concurrentProjects : pool.getParallelism() + 1;
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(workers, pending.size()); i++) {
+                Thread thread = new Thread(() -> {
+                    Project project;
+                    while ((project = take()) != null) {
+                        try {
+                            analyze(project, pool);
+                        } finally {
+                            release(project);
+                        }
+                    }
+                }, "batch-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report(sink, System.nanoTime() - started, pool.getParallelism());
+    }
+
+    /**
+     * Compte les fichiers Java d'un projet et leur taille, qui ordonnent les projets
+     * et estiment la mémoire qu'ils occuperont. Seuls comptent les répertoires que
+     * l'analyse parcourra ({@link SourceFiles#isSourceDirectory}).
+     */
+    private static void measure(Project project) {
+        if (!Files.isDirectory(project.root) || !Files.isReadable(project.root)) {
+            project.error = "not a readable directory";
+            return;
+        }
+        try {
+            Files.walkFileTree(project.root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    return SourceFiles.isSourceDirectory(project.root, dir)
+                            ? FileVisitResult.CONTINUE
+                            : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.toString().endsWith(".java")) {
+                        project.files++;
+                        project.sourceBytes += attrs.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            project.error = e.getMessage();
+        }
+    }
+
+    /**
+     * Choisit le plus gros projet en attente que la mémoire permet de lancer, en
+     * attendant si nécessaire la fin d'un projet en cours. Un projet est toujours
+     * lancé si aucun autre n'est en cours, quel que soit l'état de la mémoire.
+     *
+     * @return Le projet à analyser, ou null s'il n'en reste plus.
+     */
+    private synchronized Project take() {
+        while (!pending.isEmpty()) {
+            if (running == 0 || liveHeap() < memoryBudget) {
+                for (int i = 0; i < pending.size(); i++) {
+                    Project project = pending.get(i);
+                    if (running == 0 || reserved + project.reservation <= memoryBudget) {
+                        pending.remove(i);
+                        reserved += project.reservation;
+                        running++;
+                        peakRunning = Math.max(peakRunning, running);
+                        return project;
+                    }
+                }
+            }
+            try {
+                // Le tas vivant n'est connu qu'après un GC : il est réexaminé régulièrement
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void release(Project project) {
+        reserved -= project.reservation;
+        running--;
+        notifyAll();
+    }
+
+    /**
+     * @return La mémoire du tas encore occupée après le dernier GC de chaque zone.
+     */
+    private static long liveHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Analyse un projet sur le pool partagé, écrit son rapport puis ne conserve que
+     * ses histogrammes fusionnables : ses résultats sont libérés avant le projet suivant.
+     */
+    private void analyze(Project project, ForkJoinPool pool) {
+        long started = System.nanoTime();
+        AnalysisPipeline pipeline;
+        CyclomaticComplexityCalculator complexityCalculator;
+        ClassCohesionCalculator cohesionCalculator;
+        synchronized (settings) {
+            pipeline = settings.newPipeline(project.root);
+            complexityCalculator = settings.runs("complexity") ? settings.complexityCalculator : null;
+            cohesionCalculator = settings.runs("cohesion") ? settings.cohesionCalculator : null;
+        }
+        pipeline.setPool(pool);
+        // Histogramme et graphes à côté du rapport, jamais dans les sources du projet
+        Path artifactPrefix = outputDirectory.resolve(project.name);
+        if (complexityCalculator != null) {
+            complexityCalculator.setArtifactPrefix(artifactPrefix);
+        }
+        if (cohesionCalculator != null) {
+            cohesionCalculator.setArtifactPrefix(artifactPrefix);
+        }
+        if (cacheDirectory != null) {
+            pipeline.setCache(cacheDirectory.resolve(project.name + ".cache"));
+            if (settings.fileBudgetMillis > 0) {
+                pipeline.setQuarantine(cacheDirectory.resolve(project.name + ".quarantine"));
+            }
+        }
+        Path reportFile = outputDirectory.resolve(project.name + "." + format.getExtension());
+        try (ReportSink sink = format.open(reportFile)) {
+            sink.setElementsEnabled(!aggregatesOnly);
+            pipeline.setReportSink(sink).run();
+            sink.message("\nAnalysis complete.");
+        } catch (IOException | RuntimeException e) {
+            project.error = e.getMessage();
+            System.err.println("Analysis of " + project.root + " failed: " + e.getMessage());
+            return;
+        } finally {
+            project.wallNanos = System.nanoTime() - started;
+        }
+        IntHistogram projectComplexities = complexityCalculator == null ? null : complexityCalculator.getComplexityHistogram();
+        DoubleHistogram projectCohesions = cohesionCalculator == null ? null : cohesionCalculator.getCohesionHistogram();
+        QuantileSketch projectQuantiles = cohesionCalculator == null ? null : cohesionCalculator.getCohesionQuantiles();
+        synchronized (this) {
+            if (projectComplexities != null) {
+                project.methods = projectComplexities.count();
+                complexities.merge(projectComplexities);
+            }
+            if (projectCohesions != null) {
+                project.classes = projectQuantiles.count();
+                if (cohesions == null) {
+                    cohesions = projectCohesions.emptyCopy();
+                }
+                cohesions.merge(projectCohesions);
+                cohesionQuantiles.merge(projectQuantiles);
+            }
+        }
+    }
+
+    /**
+     * Écrit le résumé de chaque projet, dans l'ordre du manifeste, puis les
+     * histogrammes fusionnés et le résumé du lot.
+     */
+    private void report(ReportSink sink, long wallNanos, int threads) {
+        sink.message("Batch analysis of " + projects.size() + " projects");
+        long files = 0;
+        long sourceBytes = 0;
+        int failed = 0;
+        for (Project project : projects) {
+            sink.aggregate("project", project.name)
+                    .field("root", project.root.toString())
+                    .field("status", project.error == null ? "ok" : "failed");
+            if (project.error != null) {
+                failed++;
+                sink.field("error", String.valueOf(project.error)).end();
+                continue;
+            }
+            sink.field("files", project.files)
+                    .field("sourceBytes", project.sourceBytes)
+                    .field("methods", project.methods)
+                    .field("classes", project.classes)
+                    .field("wallMillis", project.wallNanos / 1e6)
+                    .field("report", outputDirectory.resolve(project.name + "." + format.getExtension()).toString())
+                    .end();
+            files += project.files;
+            sourceBytes += project.sourceBytes;
+        }
+        sink.message("");
+        if (settings.runs("complexity")) {
+            CyclomaticComplexityCalculator.writeHistogram(ALL_PROJECTS, complexities, sink);
+        }
+        if (settings.runs("cohesion") && cohesions != null) {
+            ClassCohesionCalculator.generateCohesionHistogram(ALL_PROJECTS, cohesions, cohesionQuantiles, sink);
+        }
+        sink.aggregate("batchSummary", ALL_PROJECTS)
+                .field("projects", projects.size())
+                .field("failed", failed)
+                .field("files", files)
+                .field("sourceBytes", sourceBytes)
+                .field("methods", complexities.count())
+                .field("classes", cohesionQuantiles.count())
+                .field("threads", threads)
+                .field("peakConcurrentProjects", peakRunning)
+                .field("memoryBudgetBytes", memoryBudget)
+                .field("wallMillis", wallNanos / 1e6)
+                .end();
+        sink.flush();
+    }
+}
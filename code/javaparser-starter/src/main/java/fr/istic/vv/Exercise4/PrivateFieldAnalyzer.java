@@ -1,30 +1,51 @@
 package fr.istic.vv.Exercise4;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.utils.SourceRoot;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.Analyzer;
+import fr.istic.vv.analysis.ParseProfile;
+import fr.istic.vv.analysis.SourceScan;
+import fr.istic.vv.report.ReportSink;
 
-import java.io.IOException;
+import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
-public class PrivateFieldAnalyzer {
+public class PrivateFieldAnalyzer implements Analyzer<List<PrivateFieldAnalyzer.PrivateFieldInfo>> {
 
 
      /**
      * Cette classe représente l'information concernant un champ privé sans getter.
-     * Elle contient le nom du champ, le nom de la classe qui le contient et le nom du package.
+     * Elle contient le nom du champ, le nom de la classe qui le contient, le nom du package
+     * et la ligne de déclaration du champ.
      */
-    private static class PrivateFieldInfo {
-        String fieldName;
-        String className;
-        String packageName;
+    public static class PrivateFieldInfo implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        private final String fieldName;
+        private final String className;
+        private final String packageName;
+        private final int line;
 
 
          /**
@@ -33,13 +54,34 @@ public class PrivateFieldAnalyzer {
          * @param fieldName  Le nom du champ privé.
          * @param className  Le nom de la classe contenant le champ.
          * @param packageName Le nom du package contenant la classe.
+         * @param line       La ligne de déclaration du champ, ou -1 si elle est inconnue.
          */
-        PrivateFieldInfo(String fieldName, String className, String packageName) {
+        PrivateFieldInfo(String fieldName, String className, String packageName, int line) {
             this.fieldName = fieldName;
             this.className = className;
             this.packageName = packageName;
+            this.line = line;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public int getLine() {
+            return line;
         }
     }
+
+    private final List<PrivateFieldInfo> privateFieldsWithoutGetters = new ArrayList<>();
+
     public static void main(String[] args) {
         if (args.length != 1) {
             System.out.println("Usage: java PrivateFieldAnalyzer <project_source_path>");
@@ -48,60 +90,103 @@ public class PrivateFieldAnalyzer {
     
         String sourcePath = args[0];
     
-        try {
-            List<PrivateFieldInfo> privateFieldsWithoutGetters = findPrivateFieldsWithoutGetters(sourcePath);
-    
-            for (PrivateFieldInfo field : privateFieldsWithoutGetters) {
-                System.out.println(String.format("Field: %s, Class: %s, Package: %s", 
-                    field.fieldName, field.className, field.packageName));
-            }
-            System.out.println("Analysis complete.");
-        } catch (IOException e) {
-            System.err.println("Error analyzing project: " + e.getMessage());
-            e.printStackTrace();
-        }
+        new AnalysisPipeline(Paths.get(sourcePath))
+                .register(new PrivateFieldAnalyzer())
+                .run();
     }
-    
 
+    @Override
+    public String getName() {
+        return "private fields without getters";
+    }
 
+    @Override
+    public ParseProfile getParseProfile() {
+        return ParseProfile.BODIES;
+    }
 
     /**
-     * Cette méthode parcourt tous les fichiers source dans le répertoire donné et recherche
+     * Un fichier sans le mot-clé {@code private} ne déclare aucun champ privé.
+     */
+    @Override
+    public boolean accepts(SourceScan scan) {
+        return scan.hasPrivateKeyword();
+    }
+
+    @Override
+    public List<PrivateFieldInfo> analyze(CompilationUnit unit) {
+        return findPrivateFieldsWithoutGetters(unit);
+    }
+
+    @Override
+    public void collect(List<PrivateFieldInfo> result) {
+        privateFieldsWithoutGetters.addAll(result);
+    }
+
+    @Override
+    public void report(Path sourceRoot, ReportSink sink) {
+        sink.message("\nStarting analysis for private fields without getters:");
+        for (PrivateFieldInfo field : privateFieldsWithoutGetters) {
+            sink.element("privateField", field.getFieldName())
+                    .field("class", field.getClassName())
+                    .field("package", field.getPackageName())
+                    .field("line", field.getLine())
+                    .end();
+        }
+        sink.aggregate("privateFieldSummary", sourceRoot.toString())
+                .field("fields", privateFieldsWithoutGetters.size())
+                .end();
+        sink.message("Analysis complete.");
+    }
+
+    /**
+     * Écrit la liste à jour des champs privés sans getter du fichier modifié.
+     */
+    @Override
+    public void reportChange(String file, List<PrivateFieldInfo> before, List<PrivateFieldInfo> after,
+                             boolean evicted, ReportSink sink) {
+        int count = after == null ? 0 : after.size();
+        sink.aggregate("privateFieldsChanged", file).field("fields", count).end();
+        if (after != null) {
+            for (PrivateFieldInfo field : after) {
+                sink.element("privateField", field.getFieldName())
+                        .field("class", field.getClassName())
+                        .field("package", field.getPackageName())
+                        .field("line", field.getLine())
+                        .end();
+            }
+        }
+    }
+
+    /**
+     * Cette méthode parcourt une CompilationUnit et recherche
      * les champs privés qui n'ont pas de getters publics.
+     * Chaque variable d'une déclaration multiple ({@code private int a, b;}) est
+     * vérifiée séparément.
      * 
-     * @param sourcePath Le chemin du projet source à analyser.
+     * @param cu La CompilationUnit à analyser.
      * @return Une liste de PrivateFieldInfo contenant les informations des champs privés sans getters.
-     * @throws IOException Si une erreur d'entrée/sortie se produit lors de l'analyse des fichiers.
      */
-    private static List<PrivateFieldInfo> findPrivateFieldsWithoutGetters(String sourcePath) throws IOException {
+    public static List<PrivateFieldInfo> findPrivateFieldsWithoutGetters(CompilationUnit cu) {
         List<PrivateFieldInfo> privateFieldsWithoutGetters = new ArrayList<>();
-        SourceRoot root = new SourceRoot(Paths.get(sourcePath));
-        root.tryToParseParallelized();
-    
-        for (CompilationUnit cu : root.getCompilationUnits()) {
-            for (ClassOrInterfaceDeclaration classDeclaration : cu.findAll(ClassOrInterfaceDeclaration.class)) {
-                if (classDeclaration.isPublic()) {
-                    String packageName = cu.getPackageDeclaration()
-                            .map(p -> p.getName().asString())
-                            .orElse("default");
-    
-                    List<String> existingGetters = new ArrayList<>();
-                    for (MethodDeclaration method : classDeclaration.getMethods()) {
-                        if (method.isPublic() && method.getName().asString().startsWith("get") &&
-                            method.getBody().isPresent() && isSimpleGetter(method)) {
-                            String getterName = method.getName().asString().substring(3).toLowerCase();
-                            existingGetters.add(getterName);
-                        }
-                    }
-    
-                    for (FieldDeclaration field : classDeclaration.findAll(FieldDeclaration.class)) {
-                        if (field.isPrivate()) {
-                            String fieldName = field.getVariables().get(0).getName().asString().toLowerCase();
-                            if (!existingGetters.contains(fieldName)) {
+        String packageName = cu.getPackageDeclaration()
+                .map(p -> p.getName().asString())
+                .orElse("default");
+
+        for (ClassOrInterfaceDeclaration classDeclaration : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            if (classDeclaration.isPublic()) {
+                Set<String> fieldsWithGetters = indexFieldsWithGetters(classDeclaration);
+
+                for (FieldDeclaration field : classDeclaration.getFields()) {
+                    if (field.isPrivate()) {
+                        for (VariableDeclarator variable : field.getVariables()) {
+                            String fieldName = variable.getNameAsString();
+                            if (!fieldsWithGetters.contains(fieldName)) {
                                 privateFieldsWithoutGetters.add(new PrivateFieldInfo(
-                                        field.getVariables().get(0).getName().asString(),
+                                        fieldName,
                                         classDeclaration.getNameAsString(),
-                                        packageName
+                                        packageName,
+                                        variable.getBegin().map(position -> position.line).orElse(-1)
                                 ));
                             }
                         }
@@ -109,24 +194,122 @@ public class PrivateFieldAnalyzer {
                 }
             }
         }
-    
+
         return privateFieldsWithoutGetters;
     }
-    
 
-      /**
-     * Cette méthode vérifie si une méthode est un getter simple, c'est-à-dire qu'elle retourne
-     * une valeur sans paramètre et contient un simple "return".
-     * 
-     * @param method La méthode à vérifier.
-     * @return true si la méthode est un getter simple, false sinon.
+    /**
+     * Construit l'index des champs de la classe qui ont un getter, en un seul parcours
+     * de ses méthodes. Une méthode est un getter du champ {@code x} si elle est publique,
+     * sans paramètre, que son corps se termine par un {@code return} qui renvoie le champ
+     * ou une copie du champ (voir {@link #returnedFields(MethodDeclaration)}), et qu'elle
+     * s'appelle {@code getX}, {@code isX} (pour un booléen) ou {@code x} (accesseur à la
+     * manière des records). La comparaison du nom ignore la casse, comme pour
+     * {@code getURL} et le champ {@code url}.
+     *
+     * @param classDeclaration La classe à indexer.
+     * @return Les noms des champs ayant un getter.
+     */
+    private static Set<String> indexFieldsWithGetters(ClassOrInterfaceDeclaration classDeclaration) {
+        Map<String, String> fieldTypes = new HashMap<>();
+        for (FieldDeclaration field : classDeclaration.getFields()) {
+            for (VariableDeclarator variable : field.getVariables()) {
+                fieldTypes.put(variable.getNameAsString(), variable.getTypeAsString());
+            }
+        }
+
+        Set<String> fieldsWithGetters = new HashSet<>();
+        for (MethodDeclaration method : classDeclaration.getMethods()) {
+            if (!method.isPublic() || !method.getParameters().isEmpty() || method.getType().isVoidType()) {
+                continue;
+            }
+            for (String returnedField : returnedFields(method)) {
+                String type = fieldTypes.get(returnedField);
+                if (type != null && isAccessorName(method.getNameAsString(), returnedField, type)) {
+                    fieldsWithGetters.add(returnedField);
+                    break;
+                }
+            }
+        }
+        return fieldsWithGetters;
+    }
+
+    /**
+     * Les champs que peut renvoyer la dernière instruction du corps de la méthode : le
+     * champ lui-même ({@code return x;} ou {@code return this.x;}), ou un champ servant
+     * de portée ou d'argument à l'appel ou à la création renvoyé, comme une copie
+     * défensive ou une vue ({@code return x.clone();},
+     * {@code return Collections.unmodifiableList(x);}, {@code return new ArrayList<>(x);}),
+     * transtypage et parenthèses mis à part. Un champ qui n'apparaît que dans un calcul
+     * ({@code return x + 1;}) n'est pas renvoyé.
+     *
+     * @return Les noms des champs candidats, vide si la méthode ne se termine pas par un return.
+     */
+    private static List<String> returnedFields(MethodDeclaration method) {
+        List<String> fields = new ArrayList<>(2);
+        if (!method.getBody().isPresent()) {
+            return fields;
+        }
+        BlockStmt body = method.getBody().get();
+        if (body.getStatements().isEmpty()) {
+            return fields;
+        }
+        Statement last = body.getStatements().get(body.getStatements().size() - 1);
+        if (!(last instanceof ReturnStmt) || !((ReturnStmt) last).getExpression().isPresent()) {
+            return fields;
+        }
+        Expression returned = ((ReturnStmt) last).getExpression().get();
+        // return (Date) date.clone(); ou return (x);
+        while (returned instanceof CastExpr || returned instanceof EnclosedExpr) {
+            returned = returned instanceof CastExpr
+                    ? ((CastExpr) returned).getExpression()
+                    : ((EnclosedExpr) returned).getInner();
+        }
+        addFieldName(returned, fields);
+        if (returned instanceof MethodCallExpr) {
+            MethodCallExpr call = (MethodCallExpr) returned;
+            call.getScope().ifPresent(scope -> addFieldName(scope, fields));
+            for (Expression argument : call.getArguments()) {
+                addFieldName(argument, fields);
+            }
+        } else if (returned instanceof ObjectCreationExpr) {
+            for (Expression argument : ((ObjectCreationExpr) returned).getArguments()) {
+                addFieldName(argument, fields);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Ajoute le nom du champ désigné par l'expression, si elle s'écrit {@code x} ou {@code this.x}.
      */
-    private static boolean isSimpleGetter(MethodDeclaration method) {
-        try {
-            String methodBody = method.getBody().get().toString();
-            return methodBody.contains("return") && method.getParameters().isEmpty();
-        } catch (Exception e) {
-            return false;
+    private static void addFieldName(Expression expression, List<String> fields) {
+        if (expression.isNameExpr()) {
+            fields.add(expression.asNameExpr().getNameAsString());
+        } else if (expression instanceof FieldAccessExpr) {
+            FieldAccessExpr access = (FieldAccessExpr) expression;
+            if (access.getScope() instanceof ThisExpr) {
+                fields.add(access.getNameAsString());
+            }
+        }
+    }
+
+    private static boolean isAccessorName(String methodName, String fieldName, String fieldType) {
+        if (methodName.equals(fieldName)) {
+            return true;
+        }
+        if (hasPrefixedName(methodName, "get", fieldName)) {
+            return true;
         }
+        return ("boolean".equals(fieldType) || "Boolean".equals(fieldType)) && hasPrefixedName(methodName, "is", fieldName);
+    }
+
+    /**
+     * Vérifie sans allocation que {@code methodName} vaut {@code prefix + fieldName}, à la casse près.
+     */
+    private static boolean hasPrefixedName(String methodName, String prefix, String fieldName) {
+        return methodName.length() == prefix.length() + fieldName.length()
+                && methodName.startsWith(prefix)
+                && methodName.regionMatches(true, prefix.length(), fieldName, 0, fieldName.length());
     }
 }
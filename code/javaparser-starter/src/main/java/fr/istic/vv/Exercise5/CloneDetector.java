@@ -0,0 +1,295 @@
+package fr.istic.vv.Exercise5;
+
+import fr.istic.vv.graph.SymbolTable;
+import fr.istic.vv.report.ReportSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regroupe les méthodes clonées d'après leurs {@link MethodFingerprint empreintes},
+ * sans comparer les méthodes deux à deux :
+ * <ul>
+ * <li>les clones de type 2 sont les méthodes de même empreinte normalisée, trouvées
+ * par un index sur cette empreinte ; parmi elles, celles de même empreinte exacte
+ * forment en plus un groupe de type 1 ;</li>
+ * <li>les clones approchés sont cherchés entre un représentant par empreinte
+ * normalisée, via un index inversé des fenêtres : deux représentants sont
+ * rapprochés quand le coefficient de Dice de leurs fenêtres (deux fois les fenêtres
+ * communes sur la somme des fenêtres) atteint {@value #NEAR_MISS_SIMILARITY}. Un
+ * groupe approché réunit aussi les clones de type 2 de ses représentants. Une
+ * fenêtre présente dans plus de {@value #MAX_POSTINGS} méthodes est trop banale pour
+ * être discriminante et n'est pas consultée, ce qui borne le travail par fenêtre :
+ * la détection reste linéaire en nombre de méthodes.</li>
+ * </ul>
+ */
+public class CloneDetector {
+
+    /**
+     * Taille minimale, en nœuds d'AST, d'une méthode prise en compte : en dessous,
+     * les accesseurs et autres méthodes triviales formeraient d'immenses groupes.
+     */
+    public static final int DEFAULT_MIN_NODES = 40;
+
+    static final double NEAR_MISS_SIMILARITY = 0.7;
+    static final int MAX_POSTINGS = 64;
+
+    /**
+     * Les sortes de clones, de la plus stricte à la plus lâche.
+     */
+    public enum CloneType {
+        /** Identiques aux espaces, commentaires et annotations près. */
+        TYPE_1("type-1"),
+        /** Identiques aux identifiants, littéraux et types près. */
+        TYPE_2("type-2"),
+        /** Quelques instructions ajoutées, supprimées ou modifiées. */
+        NEAR_MISS("near-miss");
+
+        private final String label;
+
+        CloneType(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Un groupe de méthodes clonées, triées par signature.
+     */
+    public static final class CloneGroup {
+        private final CloneType type;
+        private final List<String> methods;
+        private final int nodes;
+
+        CloneGroup(CloneType type, List<String> methods, int nodes) {
+            this.type = type;
+            this.methods = methods;
+            this.nodes = nodes;
+        }
+
+        public CloneType getType() {
+            return type;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        /**
+         * @return La taille en nœuds de la plus grande méthode du groupe.
+         */
+        public int getNodes() {
+            return nodes;
+        }
+    }
+
+    private static final Comparator<CloneGroup> REPORT_ORDER = Comparator
+            .comparing(CloneGroup::getType)
+            .thenComparing(Comparator.comparingInt((CloneGroup group) -> group.methods.size()).reversed())
+            .thenComparing(group -> group.methods.get(0));
+
+    private final int minNodes;
+    private final SymbolTable methodNames;
+    private final Postings methods = new Postings();
+    private final List<MethodFingerprint> fingerprints = new ArrayList<>();
+
+    /**
+     * @param minNodes    La taille minimale d'une méthode prise en compte.
+     * @param methodNames Les signatures des méthodes, indexées par identifiant.
+     */
+    public CloneDetector(int minNodes, SymbolTable methodNames) {
+        this.minNodes = minNodes;
+        this.methodNames = methodNames;
+    }
+
+    /**
+     * Ajoute une méthode, ignorée si elle est plus petite que la taille minimale.
+     *
+     * @param method      L'identifiant de la méthode dans la table des signatures.
+     * @param fingerprint Ses empreintes.
+     */
+    public void add(int method, MethodFingerprint fingerprint) {
+        if (fingerprint.getNodes() >= minNodes) {
+            methods.add(method);
+            fingerprints.add(fingerprint);
+        }
+    }
+
+    /**
+     * @return Les groupes de clones, par sorte puis par taille décroissante.
+     */
+    public List<CloneGroup> findClones() {
+        // Un groupe par empreinte normalisée, dans l'ordre d'ajout des méthodes
+        Map<Long, Postings> byNormalized = new HashMap<>();
+        List<Postings> classes = new ArrayList<>();
+        for (int i = 0; i < fingerprints.size(); i++) {
+            Postings members = byNormalized.computeIfAbsent(fingerprints.get(i).getNormalized(), hash -> {
+                Postings created = new Postings();
+                classes.add(created);
+                return created;
+            });
+            members.add(i);
+        }
+
+        List<CloneGroup> groups = new ArrayList<>();
+        for (Postings members : classes) {
+            if (members.size > 1) {
+                Map<Long, Postings> byExact = new HashMap<>();
+                List<Postings> identical = new ArrayList<>();
+                for (int k = 0; k < members.size; k++) {
+                    byExact.computeIfAbsent(fingerprints.get(members.ids[k]).getExact(), hash -> {
+                        Postings created = new Postings();
+                        identical.add(created);
+                        return created;
+                    }).add(members.ids[k]);
+                }
+                for (Postings copies : identical) {
+                    if (copies.size > 1) {
+                        groups.add(group(CloneType.TYPE_1, copies));
+                    }
+                }
+                if (identical.size() > 1) {
+                    groups.add(group(CloneType.TYPE_2, members));
+                }
+            }
+        }
+
+        // Clones approchés entre représentants : le premier membre de chaque groupe
+        int[] parent = new int[classes.size()];
+        boolean[] nearMiss = new boolean[classes.size()];
+        Map<Long, Postings> byWindow = new HashMap<>();
+        Map<Integer, int[]> shared = new HashMap<>();
+        for (int c = 0; c < classes.size(); c++) {
+            parent[c] = c;
+            long[] windows = fingerprints.get(classes.get(c).ids[0]).getWindows();
+            shared.clear();
+            for (long window : windows) {
+                Postings postings = byWindow.get(window);
+                if (postings != null && postings.size <= MAX_POSTINGS) {
+                    for (int k = 0; k < postings.size; k++) {
+                        shared.computeIfAbsent(postings.ids[k], other -> new int[1])[0]++;
+                    }
+                }
+            }
+            for (Map.Entry<Integer, int[]> candidate : shared.entrySet()) {
+                int other = candidate.getKey();
+                int total = windows.length + fingerprints.get(classes.get(other).ids[0]).getWindows().length;
+                if (2 * candidate.getValue()[0] >= NEAR_MISS_SIMILARITY * total) {
+                    union(parent, c, other);
+                    nearMiss[c] = true;
+                    nearMiss[other] = true;
+                }
+            }
+            for (long window : windows) {
+                Postings postings = byWindow.computeIfAbsent(window, hash -> new Postings());
+                if (postings.size <= MAX_POSTINGS) {
+                    postings.add(c);
+                }
+            }
+        }
+        Map<Integer, Postings> components = new HashMap<>();
+        List<Postings> nearMissGroups = new ArrayList<>();
+        for (int c = 0; c < classes.size(); c++) {
+            if (nearMiss[c]) {
+                Postings component = components.computeIfAbsent(find(parent, c), root -> {
+                    Postings created = new Postings();
+                    nearMissGroups.add(created);
+                    return created;
+                });
+                Postings members = classes.get(c);
+                for (int k = 0; k < members.size; k++) {
+                    component.add(members.ids[k]);
+                }
+            }
+        }
+        for (Postings members : nearMissGroups) {
+            groups.add(group(CloneType.NEAR_MISS, members));
+        }
+        groups.sort(REPORT_ORDER);
+        return groups;
+    }
+
+    private CloneGroup group(CloneType type, Postings members) {
+        List<String> signatures = new ArrayList<>(members.size);
+        int nodes = 0;
+        for (int k = 0; k < members.size; k++) {
+            signatures.add(methodNames.name(methods.ids[members.ids[k]]));
+            nodes = Math.max(nodes, fingerprints.get(members.ids[k]).getNodes());
+        }
+        signatures.sort(null);
+        return new CloneGroup(type, signatures, nodes);
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Écrit chaque groupe de clones et ses méthodes, puis un résumé par sorte de clone.
+     *
+     * @param projectPath Le sujet du résumé.
+     * @param sink        Le rapport dans lequel écrire.
+     */
+    public void report(String projectPath, ReportSink sink) {
+        List<CloneGroup> groups = findClones();
+        sink.message("Clone groups for project: " + projectPath);
+        long[] groupsByType = new long[CloneType.values().length];
+        long[] methodsByType = new long[CloneType.values().length];
+        for (int i = 0; i < groups.size(); i++) {
+            CloneGroup group = groups.get(i);
+            String name = "clone group " + (i + 1);
+            sink.element("cloneGroup", name)
+                    .field("cloneType", group.getType().getLabel())
+                    .field("methods", group.getMethods().size())
+                    .field("nodes", group.getNodes())
+                    .end();
+            for (String method : group.getMethods()) {
+                sink.element("cloneMember", method).field("group", name).end();
+            }
+            groupsByType[group.getType().ordinal()]++;
+            methodsByType[group.getType().ordinal()] += group.getMethods().size();
+        }
+        for (CloneType type : CloneType.values()) {
+            sink.aggregate("cloneSummary", projectPath)
+                    .field("cloneType", type.getLabel())
+                    .field("groups", groupsByType[type.ordinal()])
+                    .field("methods", methodsByType[type.ordinal()])
+                    .end();
+        }
+        sink.message("");
+    }
+
+    /**
+     * Une liste d'index de méthodes, sans boîtes.
+     */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package fr.istic.vv.Exercise5;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import fr.istic.vv.analysis.FileBudget;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Calcule en un seul parcours la complexité cyclomatique de toutes les méthodes
+ * d'un sous-arbre. Chaque point de décision incrémente un simple compteur :
+ * if, for, for-each, while, do, case, catch, opérateur ternaire et opérateurs
+ * {@code &&} / {@code ||}. Les branches des lambdas comptent pour la méthode
+ * qui les contient, alors que les méthodes imbriquées (classes anonymes ou
+ * locales) ont leur propre complexité.
+ * <p>
+ * Le même parcours peut calculer les empreintes ({@link MethodFingerprint}) de
+ * chaque méthode : les points de décision sont comptés à l'entrée d'un nœud, son
+ * empreinte est calculée à sa sortie, une fois celles de ses enfants connues. Chaque
+ * nœud n'est donc haché qu'une fois, et l'empreinte d'une méthode imbriquée est
+ * réutilisée telle quelle dans celle de la méthode qui la contient.
+ * <p>
+ * Le parcours utilise une pile explicite plutôt que la récursion : une expression
+ * imbriquée sur des milliers de niveaux, fréquente dans le code généré, ne peut pas
+ * épuiser la pile du thread.
+ */
+public final class ComplexityVisitor {
+
+    /**
+     * Reçoit chaque méthode avec sa complexité et ses empreintes.
+     */
+    @FunctionalInterface
+    public interface MethodConsumer {
+        void accept(MethodDeclaration method, int complexity, MethodFingerprint fingerprint);
+    }
+
+    private ComplexityVisitor() {
+    }
+
+    /**
+     * Parcourt un sous-arbre une seule fois et transmet chaque méthode rencontrée avec
+     * sa complexité cyclomatique. Une méthode est transmise après ses méthodes imbriquées.
+     *
+     * @param root     La racine du parcours, typiquement une CompilationUnit.
+     * @param consumer Reçoit chaque méthode et sa complexité.
+     */
+    public static void computeAll(Node root, ObjIntConsumer<MethodDeclaration> consumer) {
+        new Walk(null, consumer).run(root);
+    }
+
+    /**
+     * Comme {@link #computeAll(Node, ObjIntConsumer)}, mais calcule aussi, dans le même
+     * parcours, les empreintes de chaque méthode.
+     *
+     * @param root     La racine du parcours, typiquement une CompilationUnit.
+     * @param consumer Reçoit chaque méthode, sa complexité et ses empreintes.
+     */
+    public static void computeAll(Node root, MethodConsumer consumer) {
+        new Walk(consumer, null).run(root);
+    }
+
+    private static boolean isDecision(Node node) {
+        if (node instanceof IfStmt || node instanceof ForStmt || node instanceof ForEachStmt
+                || node instanceof WhileStmt || node instanceof DoStmt || node instanceof CatchClause
+                || node instanceof ConditionalExpr) {
+            return true;
+        }
+        if (node instanceof SwitchEntry) {
+            // Le cas default n'ajoute pas de chemin
+            return ((SwitchEntry) node).getLabels().isNonEmpty();
+        }
+        if (node instanceof BinaryExpr) {
+            BinaryExpr.Operator operator = ((BinaryExpr) node).getOperator();
+            return operator == BinaryExpr.Operator.AND || operator == BinaryExpr.Operator.OR;
+        }
+        return false;
+    }
+
+    /**
+     * Un parcours en profondeur, avec la pile des nœuds en cours. Pour chaque nœud en
+     * cours, la pile garde le prochain enfant à visiter et, si les empreintes sont
+     * demandées, ses empreintes partielles et son nombre de nœuds. Les sous-arbres
+     * ignorés par les empreintes (commentaires, annotations...) sont parcourus pour la
+     * complexité, sans être hachés.
+     */
+    private static final class Walk {
+        private final MethodConsumer fingerprinted;
+        private final ObjIntConsumer<MethodDeclaration> plain;
+        private final boolean hashing;
+
+        private Node[] path = new Node[32];
+        private List<Node>[] children = newChildren(32);
+        private int[] nextChild = new int[32];
+        private boolean[] ignored = new boolean[32];
+        private int[] enclosingDecisions = new int[32];
+        private long[] normalized = new long[32];
+        private long[] exact = new long[32];
+        private int[] nodes = new int[32];
+        private int depth;
+
+        /**
+         * Les instructions relevées pour chaque méthode en cours, de la plus externe à
+         * la plus interne : une instruction d'une méthode imbriquée appartient aussi
+         * aux méthodes qui la contiennent.
+         */
+        private long[][] statements = new long[4][];
+        private int[] statementCounts = new int[4];
+        private int openMethods;
+
+        private int decisions;
+        private int visited;
+
+        Walk(MethodConsumer fingerprinted, ObjIntConsumer<MethodDeclaration> plain) {
+            this.fingerprinted = fingerprinted;
+            this.plain = plain;
+            this.hashing = fingerprinted != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Node>[] newChildren(int size) {
+            return (List<Node>[]) new List<?>[size];
+        }
+
+        void run(Node root) {
+            enter(root, false);
+            while (depth > 0) {
+                int top = depth - 1;
+                if (nextChild[top] < children[top].size()) {
+                    Node child = children[top].get(nextChild[top]++);
+                    enter(child, ignored[top] || hashing && MethodFingerprint.isIgnored(child, path[top]));
+                } else {
+                    exit(top);
+                }
+            }
+        }
+
+        private void enter(Node node, boolean ignore) {
+            FileBudget.checkpoint(++visited);
+            if (depth == path.length) {
+                grow();
+            }
+            path[depth] = node;
+            children[depth] = node.getChildNodes();
+            nextChild[depth] = 0;
+            ignored[depth] = ignore;
+            if (node instanceof MethodDeclaration) {
+                enclosingDecisions[depth] = decisions;
+                decisions = 0;
+                if (hashing) {
+                    openMethod();
+                }
+            } else if (isDecision(node)) {
+                decisions++;
+            }
+            if (hashing && !ignore) {
+                long start = MethodFingerprint.start(node);
+                normalized[depth] = start;
+                exact[depth] = MethodFingerprint.mix(start, MethodFingerprint.valueOf(node));
+                nodes[depth] = 1;
+            }
+            depth++;
+        }
+
+        private void exit(int top) {
+            Node node = path[top];
+            path[top] = null;
+            children[top] = null;
+            depth--;
+            long nodeNormalized = 0;
+            long nodeExact = 0;
+            if (hashing && !ignored[top]) {
+                nodeNormalized = MethodFingerprint.finish(normalized[top]);
+                nodeExact = MethodFingerprint.finish(exact[top]);
+                if (node instanceof Statement && !(node instanceof BlockStmt)) {
+                    addStatement(nodeNormalized);
+                }
+                if (depth > 0 && !ignored[depth - 1]) {
+                    normalized[depth - 1] = MethodFingerprint.mix(normalized[depth - 1], nodeNormalized);
+                    exact[depth - 1] = MethodFingerprint.mix(exact[depth - 1], nodeExact);
+                    nodes[depth - 1] += nodes[top];
+                }
+            }
+            if (node instanceof MethodDeclaration) {
+                MethodDeclaration method = (MethodDeclaration) node;
+                if (hashing) {
+                    openMethods--;
+                    MethodFingerprint fingerprint = MethodFingerprint.create(nodeExact, nodeNormalized, nodes[top],
+                            statements[openMethods], statementCounts[openMethods]);
+                    statements[openMethods] = null;
+                    fingerprinted.accept(method, 1 + decisions, fingerprint);
+                } else {
+                    plain.accept(method, 1 + decisions);
+                }
+                decisions = enclosingDecisions[top];
+            }
+        }
+
+        private void openMethod() {
+            if (openMethods == statements.length) {
+                statements = Arrays.copyOf(statements, openMethods * 2);
+                statementCounts = Arrays.copyOf(statementCounts, openMethods * 2);
+            }
+            statements[openMethods] = new long[16];
+            statementCounts[openMethods] = 0;
+            openMethods++;
+        }
+
+        private void addStatement(long hash) {
+            for (int m = 0; m < openMethods; m++) {
+                if (statementCounts[m] == statements[m].length) {
+                    statements[m] = Arrays.copyOf(statements[m], statementCounts[m] * 2);
+                }
+                statements[m][statementCounts[m]++] = hash;
+            }
+        }
+
+        private void grow() {
+            int capacity = depth * 2;
+            path = Arrays.copyOf(path, capacity);
+            children = Arrays.copyOf(children, capacity);
+            nextChild = Arrays.copyOf(nextChild, capacity);
+            ignored = Arrays.copyOf(ignored, capacity);
+            enclosingDecisions = Arrays.copyOf(enclosingDecisions, capacity);
+            normalized = Arrays.copyOf(normalized, capacity);
+            exact = Arrays.copyOf(exact, capacity);
+            nodes = Arrays.copyOf(nodes, capacity);
+        }
+    }
+}
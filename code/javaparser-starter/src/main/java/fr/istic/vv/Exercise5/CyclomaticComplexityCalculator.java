@@ -1,16 +1,77 @@
 package fr.istic.vv.Exercise5;
 
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.utils.SourceRoot;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.Analyzer;
+import fr.istic.vv.analysis.MethodIdentities;
+import fr.istic.vv.analysis.ParseProfile;
+import fr.istic.vv.graph.SymbolTable;
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.IntHistogram;
 
 import java.io.FileWriter;
+import java.io.Serializable;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
-public class CyclomaticComplexityCalculator {
+public class CyclomaticComplexityCalculator implements Analyzer<CyclomaticComplexityCalculator.FileComplexity> {
+
+    /**
+     * Résultat compact de l'analyse d'un fichier : la signature, la complexité, le
+     * nombre de lignes et les empreintes structurelles de chaque méthode, dans des
+     * tableaux parallèles, dans l'ordre du parcours.
+     */
+    public static class FileComplexity implements Serializable {
+        private static final long serialVersionUID = 2L;
+
+        String[] methods = new String[8];
+        int[] complexities = new int[8];
+        int[] lines = new int[8];
+        MethodFingerprint[] fingerprints = new MethodFingerprint[8];
+        int size;
+
+        void add(String method, int complexity, int lineCount, MethodFingerprint fingerprint) {
+            if (size == methods.length) {
+                resize(size * 2);
+            }
+            methods[size] = method;
+            complexities[size] = complexity;
+            lines[size] = lineCount;
+            fingerprints[size] = fingerprint;
+            size++;
+        }
+
+        /**
+         * Ajuste les tableaux au nombre de méthodes, avant que le résultat ne soit conservé.
+         */
+        void resize(int capacity) {
+            methods = Arrays.copyOf(methods, capacity);
+            complexities = Arrays.copyOf(complexities, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+        }
+
+        Map<String, Integer> complexityBySignature() {
+            Map<String, Integer> bySignature = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                bySignature.put(methods[i], complexities[i]);
+            }
+            return bySignature;
+        }
+    }
+
+    /**
+     * Chaque signature n'est stockée qu'une fois ; complexité et nombre de lignes sont
+     * indexés par l'identifiant de la méthode.
+     */
+    private final SymbolTable methodIds = new SymbolTable();
+    private int[] methodComplexities = new int[256];
+    private int[] methodLines = new int[256];
+    private CloneDetector cloneDetector = new CloneDetector(CloneDetector.DEFAULT_MIN_NODES, methodIds);
+    private Path artifactPrefix;
+
     public static void main(String[] args) {
         if (args.length < 1) {
             System.out.println("Usage: java CyclomaticComplexityCalculator <path-to-source> [path-to-source2 ...]");
@@ -18,22 +79,14 @@ public class CyclomaticComplexityCalculator {
         }
 
         try {
-            Map<String, Map<String, Integer>> allProjectComplexities = new HashMap<>();
-
+            ReportSink sink = null;
             for (String sourcePath : args) {
-                CyclomaticComplexityCalculator calculator = new CyclomaticComplexityCalculator();
-                Map<String, Integer> methodComplexities = calculator.analyzeProject(sourcePath);
-                allProjectComplexities.put(sourcePath, methodComplexities);
-                
-                System.out.println("Method complexities for project: " + sourcePath);
-                for (Map.Entry<String, Integer> entry : methodComplexities.entrySet()) {
-                    System.out.println(String.format("%s : Cyclomatic Complexity = %d", entry.getKey(), entry.getValue()));
-                }
-                System.out.println();
+                AnalysisPipeline pipeline = new AnalysisPipeline(Paths.get(sourcePath))
+                        .register(new CyclomaticComplexityCalculator())
+                        .setReportSink(sink);
+                pipeline.run();
+                sink = pipeline.getReportSink();
             }
-
-            generateHistogram(allProjectComplexities);
-
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -46,109 +99,266 @@ public class CyclomaticComplexityCalculator {
      * @param sourcePath Le chemin du projet source à analyser.
      * @return Une carte contenant la signature de la méthode comme clé et sa
      *         complexité cyclomatique comme valeur.
-     * @throws Exception Si une erreur se produit lors de l'analyse du projet.
      */
-    public Map<String, Integer> analyzeProject(String sourcePath) throws Exception {
-        Map<String, Integer> methodComplexities = new HashMap<>();
+    public Map<String, Integer> analyzeProject(String sourcePath) {
+        new AnalysisPipeline(Paths.get(sourcePath)).register(this).analyze();
+        return getMethodComplexities();
+    }
+
+    /**
+     * Fixe la taille minimale, en nœuds d'AST, des méthodes prises en compte par la
+     * détection de clones. À appeler avant l'analyse.
+     *
+     * @param minNodes La taille minimale.
+     * @return Ce calculateur, pour chaîner les appels.
+     */
+    public CyclomaticComplexityCalculator setCloneMinNodes(int minNodes) {
+        this.cloneDetector = new CloneDetector(minNodes, methodIds);
+        return this;
+    }
+
+    /**
+     * Choisit où est écrit l'histogramme : {@code <préfixe>_complexity_histogram.csv}.
+     * Par défaut, il est écrit à côté de la racine du projet analysé.
+     *
+     * @param artifactPrefix Le début du chemin du fichier, ou null pour la racine du projet.
+     * @return Ce calculateur, pour chaîner les appels.
+     */
+    public CyclomaticComplexityCalculator setArtifactPrefix(Path artifactPrefix) {
+        this.artifactPrefix = artifactPrefix;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return "cyclomatic complexity";
+    }
+
+    @Override
+    public ParseProfile getParseProfile() {
+        return ParseProfile.BODIES;
+    }
 
-        SourceRoot sourceRoot = new SourceRoot(Paths.get(sourcePath));
-        sourceRoot.tryToParseParallelized();
+    /**
+     * Calcule la complexité cyclomatique et les empreintes de chaque méthode de la
+     * CompilationUnit.
+     *
+     * @param cu La CompilationUnit à analyser.
+     * @return La complexité, le nombre de lignes et les empreintes de chaque méthode,
+     *         avec sa signature (voir {@link MethodIdentities}).
+     */
+    @Override
+    public FileComplexity analyze(CompilationUnit cu) {
+        FileComplexity result = new FileComplexity();
+        MethodIdentities identities = MethodIdentities.of(cu);
+        ComplexityVisitor.computeAll(cu, (method, complexity, fingerprint) -> result.add(
+                identities.signature(method), complexity, lineCount(method), fingerprint));
+        result.resize(result.size);
+        return result;
+    }
 
-        for (CompilationUnit cu : sourceRoot.getCompilationUnits()) {
-            for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
-                int complexity = calculateComplexity(method);
-                String methodSignature = getMethodSignature(cu, method);
-                methodComplexities.put(methodSignature, complexity);
+    /**
+     * Ajoute les méthodes d'un fichier. Une signature déjà rencontrée (la même classe
+     * déclarée dans deux fichiers) garde sa première occurrence : l'autre est ignorée,
+     * sans quoi elle formerait un groupe de clones avec elle-même.
+     */
+    @Override
+    public void collect(FileComplexity result) {
+        for (int i = 0; i < result.size; i++) {
+            int known = methodIds.size();
+            int id = methodIds.intern(result.methods[i]);
+            if (id < known) {
+                continue;
             }
+            if (id >= methodComplexities.length) {
+                methodComplexities = Arrays.copyOf(methodComplexities, Math.max(id + 1, 2 * methodComplexities.length));
+                methodLines = Arrays.copyOf(methodLines, methodComplexities.length);
+            }
+            methodComplexities[id] = result.complexities[i];
+            methodLines[id] = result.lines[i];
+            cloneDetector.add(id, result.fingerprints[i]);
+        }
+    }
+
+    /**
+     * @return Le nombre de méthodes distinctes analysées ; leurs identifiants vont de 0
+     *         à ce nombre exclu, dans l'ordre de leur première rencontre.
+     */
+    public int getMethodCount() {
+        return methodIds.size();
+    }
+
+    public String getMethodSignature(int method) {
+        return methodIds.name(method);
+    }
+
+    public int getComplexity(int method) {
+        return methodComplexities[method];
+    }
+
+    /**
+     * @return Le nombre de lignes d'une méthode, de sa déclaration à la fin de son corps.
+     */
+    public int getLineCount(int method) {
+        return methodLines[method];
+    }
+
+    /**
+     * @return Une copie des complexités, indexées par signature dans l'ordre des identifiants.
+     */
+    public Map<String, Integer> getMethodComplexities() {
+        Map<String, Integer> complexities = new LinkedHashMap<>();
+        for (int id = 0; id < methodIds.size(); id++) {
+            complexities.put(methodIds.name(id), methodComplexities[id]);
         }
+        return complexities;
+    }
+
+    /**
+     * @return Les groupes de méthodes clonées parmi les méthodes analysées.
+     */
+    public List<CloneDetector.CloneGroup> getCloneGroups() {
+        return cloneDetector.findClones();
+    }
+
+    private static int lineCount(MethodDeclaration method) {
+        return method.getRange().map(range -> range.end.line - range.begin.line + 1).orElse(0);
+    }
+
+    @Override
+    public void report(Path sourceRoot, ReportSink sink) {
+        String projectPath = sourceRoot.toString();
+        sink.message("Method complexities for project: " + projectPath);
+        for (int id = 0; id < methodIds.size(); id++) {
+            sink.element("method", methodIds.name(id)).field("complexity", methodComplexities[id]).end();
+        }
+        sink.message("");
 
-        return methodComplexities;
+        String histogramFile = (artifactPrefix == null ? projectPath : artifactPrefix.toString())
+                + "_complexity_histogram.csv";
+        generateHistogram(projectPath, histogramFile, getComplexityHistogram(), sink);
+        cloneDetector.report(projectPath, sink);
+    }
+
+    /**
+     * Écrit les méthodes ajoutées ou dont la complexité a changé, et celles qui ont disparu.
+     * Si le résultat précédent a été oublié par le cache, chaque méthode est écrite comme
+     * modifiée, sans complexité précédente.
+     */
+    @Override
+    public void reportChange(String file, FileComplexity before, FileComplexity after, boolean evicted,
+                             ReportSink sink) {
+        Map<String, Integer> previous = before == null
+                ? Collections.<String, Integer>emptyMap() : before.complexityBySignature();
+        Map<String, Integer> next = after == null
+                ? Collections.<String, Integer>emptyMap() : after.complexityBySignature();
+        for (Map.Entry<String, Integer> entry : next.entrySet()) {
+            Integer old = previous.get(entry.getKey());
+            if (evicted) {
+                sink.element("method", entry.getKey())
+                        .field("file", file)
+                        .field("change", "changed")
+                        .field("complexity", entry.getValue())
+                        .end();
+            } else if (!entry.getValue().equals(old)) {
+                sink.element("method", entry.getKey())
+                        .field("file", file)
+                        .field("change", old == null ? "added" : "changed")
+                        .field("complexity", entry.getValue())
+                        .field("previous", old == null ? 0 : old)
+                        .end();
+            }
+        }
+        for (String signature : previous.keySet()) {
+            if (!next.containsKey(signature)) {
+                sink.element("method", signature).field("file", file).field("change", "removed").end();
+            }
+        }
     }
 
     /**
      * Calcule la complexité cyclomatique d'une méthode en comptant les différentes
      * structures de contrôle
-     * dans le corps de la méthode (if, for, while, etc.).
+     * dans le corps de la méthode (if, for, while, case, catch, &&, ||, etc.).
      * La complexité cyclomatique de base est 1, et chaque structure de contrôle
-     * ajoute 1 à cette complexité.
+     * ajoute 1 à cette complexité. Le corps n'est parcouru qu'une seule fois.
      *
      * @param method La méthode pour laquelle la complexité doit être calculée.
      * @return La complexité cyclomatique de la méthode.
      */
     public int calculateComplexity(MethodDeclaration method) {
-        int complexity = 1;
-        complexity += method.findAll(com.github.javaparser.ast.stmt.IfStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.ForStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.WhileStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.DoStmt.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.stmt.SwitchEntry.class).size();
-        complexity += method.findAll(com.github.javaparser.ast.expr.ConditionalExpr.class).size();
-        return complexity;
+        int[] complexity = new int[1];
+        ComplexityVisitor.computeAll(method, (visited, value) -> {
+            if (visited == method) {
+                complexity[0] = value;
+            }
+        });
+        return complexity[0];
     }
 
     /**
-     * Obtient la signature complète d'une méthode, incluant le nom de la classe, le
-     * nom de la méthode
-     * et les paramètres. La signature permet d'identifier de manière unique chaque
-     * méthode.
-     *
-     * @param cu     Le fichier source contenant la méthode.
-     * @param method La méthode pour laquelle la signature doit être générée.
-     * @return La signature complète de la méthode sous forme de chaîne de
-     *         caractères.
-     */
-    private String getMethodSignature(CompilationUnit cu, MethodDeclaration method) {
-        String className = "UnknownClass";
-        Optional<ClassOrInterfaceDeclaration> classDeclaration = cu.findFirst(ClassOrInterfaceDeclaration.class);
-        if (classDeclaration.isPresent()) {
-            className = classDeclaration.get().getNameAsString();
-        }
-
-        String methodName = method.getNameAsString();
+     * Écrit l'histogramme des complexités, par complexité croissante, et leurs quantiles.
+     */
+    private static void generateHistogram(String projectPath, String histogramFile, IntHistogram histogram,
+                                          ReportSink sink) {
+        writeHistogram(projectPath, histogram, sink);
+        saveHistogramToCSV(histogramFile, histogram, sink);
+    }
 
-        StringBuilder parameters = new StringBuilder();
-        for (int i = 0; i < method.getParameters().size(); i++) {
-            if (i > 0) {
-                parameters.append(", ");
-            }
-            parameters.append(method.getParameters().get(i).getType())
-                    .append(" ")
-                    .append(method.getParameters().get(i).getName());
+    /**
+     * @return L'histogramme des complexités des méthodes analysées, fusionnable avec
+     *         celui d'autres projets.
+     */
+    public IntHistogram getComplexityHistogram() {
+        IntHistogram histogram = new IntHistogram();
+        for (int id = 0; id < methodIds.size(); id++) {
+            histogram.add(methodComplexities[id]);
         }
-
-        return className + "." + methodName + "(" + parameters + ")";
+        return histogram;
     }
 
-    private static void generateHistogram(Map<String, Map<String, Integer>> allProjectComplexities) {
-        for (Map.Entry<String, Map<String, Integer>> project : allProjectComplexities.entrySet()) {
-            String projectPath = project.getKey();
-            Map<String, Integer> methodComplexities = project.getValue();
-
-            Map<Integer, Integer> complexityFrequency = new HashMap<>();
-            for (Integer complexity : methodComplexities.values()) {
-                complexityFrequency.put(complexity, complexityFrequency.getOrDefault(complexity, 0) + 1);
-            }
-
-            System.out.println("Cyclomatic Complexity Histogram for project: " + projectPath);
-            for (Map.Entry<Integer, Integer> entry : complexityFrequency.entrySet()) {
-                System.out.println("CC " + entry.getKey() + ": " + entry.getValue() + " method(s)");
+    /**
+     * Écrit un histogramme de complexités, par complexité croissante, et ses quantiles.
+     *
+     * @param projectPath Le sujet des enregistrements : un projet, ou un ensemble de projets.
+     * @param histogram   L'histogramme à écrire.
+     * @param sink        Le rapport dans lequel écrire.
+     */
+    public static void writeHistogram(String projectPath, IntHistogram histogram, ReportSink sink) {
+        sink.message("Cyclomatic Complexity Histogram for project: " + projectPath);
+        for (int complexity = 0; complexity <= histogram.max(); complexity++) {
+            if (histogram.count(complexity) > 0) {
+                sink.aggregate("complexityBucket", projectPath)
+                        .field("complexity", complexity)
+                        .field("methods", histogram.count(complexity))
+                        .end();
             }
-            System.out.println();
-
-            saveHistogramToCSV(projectPath, complexityFrequency);
         }
+        if (histogram.count() > 0) {
+            sink.aggregate("complexitySummary", projectPath)
+                    .field("methods", histogram.count())
+                    .field("p50", histogram.quantile(0.5))
+                    .field("p90", histogram.quantile(0.9))
+                    .field("p99", histogram.quantile(0.99))
+                    .field("max", histogram.max())
+                    .end();
+        }
+        sink.message("");
     }
 
     /**
      * Save the histogram data to a CSV file for further analysis or visualization.
      */
-    private static void saveHistogramToCSV(String projectPath, Map<Integer, Integer> complexityFrequency) {
-        try (FileWriter writer = new FileWriter(projectPath + "_complexity_histogram.csv")) {
+    private static void saveHistogramToCSV(String histogramFile, IntHistogram histogram, ReportSink sink) {
+        try (FileWriter writer = new FileWriter(histogramFile)) {
             writer.append("Cyclomatic Complexity, Frequency\n");
-            for (Map.Entry<Integer, Integer> entry : complexityFrequency.entrySet()) {
-                writer.append(entry.getKey().toString()).append(", ").append(entry.getValue().toString()).append("\n");
+            for (int complexity = 0; complexity <= histogram.max(); complexity++) {
+                if (histogram.count(complexity) > 0) {
+                    writer.append(Integer.toString(complexity)).append(", ")
+                            .append(Long.toString(histogram.count(complexity))).append("\n");
+                }
             }
-            System.out.println("Histogram saved to: " + projectPath + "_complexity_histogram.csv");
+            sink.message("Histogram saved to: " + histogramFile);
         } catch (Exception e) {
             System.err.println("Error saving histogram to CSV: " + e.getMessage());
             e.printStackTrace();
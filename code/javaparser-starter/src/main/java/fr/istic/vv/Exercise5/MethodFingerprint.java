@@ -0,0 +1,239 @@
+package fr.istic.vv.Exercise5;
+
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.BooleanLiteralExpr;
+import com.github.javaparser.ast.expr.LiteralStringValueExpr;
+import com.github.javaparser.ast.expr.Name;
+import com.github.javaparser.ast.expr.SimpleName;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.type.PrimitiveType;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Empreintes structurelles d'une méthode, calculées de bas en haut sur son AST :
+ * l'empreinte d'un nœud combine son type, ses opérateurs et les empreintes de ses
+ * enfants, dans l'ordre. Les commentaires, annotations, modificateurs et le nom de
+ * la méthode sont ignorés.
+ * <ul>
+ * <li>{@link #getExact()} tient compte des identifiants et des littéraux : deux
+ * méthodes de même empreinte exacte sont des clones de type 1.</li>
+ * <li>{@link #getNormalized()} les ignore : deux méthodes de même empreinte
+ * normalisée sont des clones de type 2 (renommages, constantes ou types changés).</li>
+ * <li>{@link #getWindows()} sert aux clones approchés : chaque fenêtre combine les
+ * empreintes normalisées de {@value #WINDOW} instructions consécutives, et seule la
+ * plus petite de chaque groupe de {@value #WINNOWING} fenêtres consécutives est
+ * conservée (winnowing). Deux méthodes qui ne diffèrent que par quelques
+ * instructions ajoutées, supprimées ou modifiées partagent la plupart de leurs fenêtres.</li>
+ * </ul>
+ */
+public final class MethodFingerprint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Nombre d'instructions consécutives combinées dans une fenêtre.
+     */
+    static final int WINDOW = 3;
+
+    /**
+     * Nombre de fenêtres consécutives parmi lesquelles une seule est conservée.
+     */
+    static final int WINNOWING = 4;
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long[] NO_WINDOWS = new long[0];
+    private static final ClassValue<Long> KINDS = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return hashOf(type.getName());
+        }
+    };
+
+    private final long exact;
+    private final long normalized;
+    private final int nodes;
+    private final long[] windows;
+
+    private MethodFingerprint(long exact, long normalized, int nodes, long[] windows) {
+        this.exact = exact;
+        this.normalized = normalized;
+        this.nodes = nodes;
+        this.windows = windows;
+    }
+
+    /**
+     * Calcule les empreintes d'une méthode en un parcours de son sous-arbre. Pour
+     * toutes les méthodes d'un fichier, préférer
+     * {@link ComplexityVisitor#computeAll(Node, ComplexityVisitor.MethodConsumer)}, qui
+     * les calcule pendant le parcours de la complexité.
+     *
+     * @param method La méthode.
+     * @return Ses empreintes.
+     */
+    public static MethodFingerprint of(MethodDeclaration method) {
+        MethodFingerprint[] result = new MethodFingerprint[1];
+        ComplexityVisitor.computeAll(method, (visited, complexity, fingerprint) -> {
+            if (visited == method) {
+                result[0] = fingerprint;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * @param statements Les empreintes normalisées des instructions de la méthode,
+     *                   dans l'ordre où elles se terminent.
+     */
+    static MethodFingerprint create(long exact, long normalized, int nodes, long[] statements, int count) {
+        return new MethodFingerprint(exact, normalized, nodes, winnow(statements, count));
+    }
+
+    public long getExact() {
+        return exact;
+    }
+
+    public long getNormalized() {
+        return normalized;
+    }
+
+    /**
+     * @return Le nombre de nœuds pris en compte, qui mesure la taille de la méthode.
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Les fenêtres conservées, triées et sans doublon. Ne pas modifier.
+     */
+    long[] getWindows() {
+        return windows;
+    }
+
+    /**
+     * Combine les empreintes des instructions en fenêtres et ne garde que la plus
+     * petite de chaque groupe de fenêtres consécutives (la plus à droite en cas d'égalité).
+     */
+    private static long[] winnow(long[] statements, int count) {
+        if (count < WINDOW) {
+            return NO_WINDOWS;
+        }
+        long[] windows = new long[count - WINDOW + 1];
+        for (int i = 0; i < windows.length; i++) {
+            long window = WINDOW;
+            for (int j = i; j < i + WINDOW; j++) {
+                window = mix(window, statements[j]);
+            }
+            windows[i] = finish(window);
+        }
+        long[] selected = new long[windows.length];
+        int size = 0;
+        int groups = Math.max(1, windows.length - WINNOWING + 1);
+        for (int i = 0; i < groups; i++) {
+            long minimum = windows[i];
+            for (int j = i + 1; j < Math.min(i + WINNOWING, windows.length); j++) {
+                if (windows[j] <= minimum) {
+                    minimum = windows[j];
+                }
+            }
+            selected[size++] = minimum;
+        }
+        long[] sorted = Arrays.copyOf(selected, size);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    static long mix(long hash, long value) {
+        return Long.rotateLeft((hash ^ value) * MULTIPLIER, 29);
+    }
+
+    /**
+     * Brasse les bits d'une empreinte (finaliseur de MurmurHash3).
+     */
+    static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static long hashOf(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return L'empreinte partielle d'un nœud avant celles de ses enfants : son type
+     *         et son opérateur.
+     */
+    static long start(Node node) {
+        return mix(KINDS.get(node.getClass()), operatorOf(node));
+    }
+
+    /**
+     * @return Vrai si l'enfant ne compte pas dans l'empreinte de son parent :
+     *         commentaire, annotation, modificateur ou nom de la méthode.
+     */
+    static boolean isIgnored(Node child, Node parent) {
+        return child instanceof Comment || child instanceof AnnotationExpr || child instanceof Modifier
+                || parent instanceof MethodDeclaration && child == ((MethodDeclaration) parent).getName();
+    }
+
+    /**
+     * @return L'opérateur d'une expression, qui fait partie de la structure du code.
+     */
+    static long operatorOf(Node node) {
+        if (node instanceof BinaryExpr) {
+            return ((BinaryExpr) node).getOperator().ordinal() + 1;
+        }
+        if (node instanceof UnaryExpr) {
+            return ((UnaryExpr) node).getOperator().ordinal() + 1;
+        }
+        if (node instanceof AssignExpr) {
+            return ((AssignExpr) node).getOperator().ordinal() + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * @return L'empreinte de ce qu'un clone de type 2 peut changer : identifiant,
+     *         littéral ou type primitif.
+     */
+    static long valueOf(Node node) {
+        if (node instanceof SimpleName) {
+            return hashOf(((SimpleName) node).getIdentifier());
+        }
+        if (node instanceof Name) {
+            return hashOf(((Name) node).getIdentifier());
+        }
+        if (node instanceof LiteralStringValueExpr) {
+            return hashOf(((LiteralStringValueExpr) node).getValue());
+        }
+        if (node instanceof BooleanLiteralExpr) {
+            return ((BooleanLiteralExpr) node).getValue() ? 2 : 1;
+        }
+        if (node instanceof PrimitiveType) {
+            return ((PrimitiveType) node).getType().ordinal() + 1;
+        }
+        return 0;
+    }
+}
@@ -2,16 +2,50 @@ package fr.istic.vv.Exercise6;
 
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.utils.SourceRoot;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.Analyzer;
+import fr.istic.vv.analysis.ParseProfile;
+import fr.istic.vv.graph.DependencyGraph;
+import fr.istic.vv.graph.GraphAlgorithms;
+import fr.istic.vv.graph.GraphFormat;
+import fr.istic.vv.graph.GraphWriter;
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.DoubleHistogram;
+import fr.istic.vv.stats.QuantileSketch;
 
-import java.io.FileWriter;
+import java.io.Serializable;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
-public class ClassCohesionCalculator {
+public class ClassCohesionCalculator implements Analyzer<ClassCohesionCalculator.FileCohesion> {
+
+    /**
+     * Résultat compact de l'analyse d'un fichier : la cohésion, le nombre de lignes et
+     * les dépendances de chacune de ses classes publiques, indexés par nom
+     * complètement qualifié.
+     */
+    public static class FileCohesion implements Serializable {
+        private static final long serialVersionUID = 4L;
+
+        final Map<String, CohesionMetrics> classCohesion = new HashMap<>();
+        final Map<String, Integer> classLines = new HashMap<>();
+        FileDependencies dependencies;
+    }
+
+    private static final int TOP_TYPES = 10;
+    private static final int DEFAULT_COHESION_BUCKETS = 10;
+    // Borne basse de l'échelle logarithmique : les cohésions inférieures sont comptées à part
+    private static final double MIN_LOG_COHESION = 0.01;
+
+    private final Map<String, CohesionMetrics> classCohesion = new HashMap<>();
+    private final Map<String, Integer> classLines = new HashMap<>();
+    private final DependencyCollector dependencies = new DependencyCollector();
+    private Set<GraphFormat> graphFormats = EnumSet.of(GraphFormat.DOT);
+    private boolean packageGraph;
+    private Path artifactPrefix;
+    private DoubleHistogram cohesionBuckets = DoubleHistogram.linear(0.0, 1.0, DEFAULT_COHESION_BUCKETS);
 
     public static void main(String[] args) {
         if (args.length != 1) {
@@ -22,154 +56,355 @@ public class ClassCohesionCalculator {
         String sourcePath = args[0];
     
         try {
-            ClassCohesionCalculator calculator = new ClassCohesionCalculator();
-            Map<String, Double> classCohesion = calculator.analyzeProject(sourcePath);
-            
-            // Affichage des résultats de cohésion
-            for (Map.Entry<String, Double> entry : classCohesion.entrySet()) {
-                String className = entry.getKey();
-                Double cohesion = entry.getValue();
-                System.out.println(String.format("%s : Cohesion = %.2f", className, cohesion));
+            new AnalysisPipeline(Paths.get(sourcePath))
+                    .register(new ClassCohesionCalculator())
+                    .run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "class cohesion";
+    }
+
+    /**
+     * Tous les fichiers sont acceptés : même sans classe publique, les types qu'ils
+     * déclarent servent à résoudre les dépendances des autres fichiers.
+     */
+    @Override
+    public ParseProfile getParseProfile() {
+        return ParseProfile.BODIES;
+    }
+
+    /**
+     * Calcule la cohésion et les dépendances de chaque classe publique de la CompilationUnit.
+     */
+    @Override
+    public FileCohesion analyze(CompilationUnit cu) {
+        FileCohesion result = new FileCohesion();
+        for (ClassOrInterfaceDeclaration cls : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            if (cls.isPublic()) {
+                String name = cls.getFullyQualifiedName().orElse(cls.getNameAsString());
+                result.classCohesion.put(name, calculateMetrics(cls));
+                result.classLines.put(name, cls.getRange().map(range -> range.end.line - range.begin.line + 1).orElse(0));
             }
+        }
+        result.dependencies = FileDependencies.extract(cu);
+        return result;
+    }
 
-            // Création des maps pour l'histogramme et le graphe
-            Map<String, Map<String, Double>> allProjectCohesion = new HashMap<>();
-            allProjectCohesion.put(sourcePath, classCohesion);
-            generateCohesionHistogram(allProjectCohesion);
+    @Override
+    public void collect(FileCohesion result) {
+        classCohesion.putAll(result.classCohesion);
+        classLines.putAll(result.classLines);
+        dependencies.add(result.dependencies);
+    }
 
-            // Analyse des dépendances
-            Map<String, Set<String>> projectDependencies = calculator.findDependencies(sourcePath);
-            Map<String, Map<String, Set<String>>> allProjectDependencies = new HashMap<>();
-            allProjectDependencies.put(sourcePath, projectDependencies);
-            
-            generateDependencyGraphs(allProjectDependencies);
+    @Override
+    public void report(Path sourceRoot, ReportSink sink) {
+        String sourcePath = sourceRoot.toString();
+        sink.message("\nStarting class cohesion analysis...");
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        // Affichage des résultats de cohésion
+        DoubleHistogram histogram = cohesionBuckets.emptyCopy();
+        QuantileSketch quantiles = new QuantileSketch();
+        for (Map.Entry<String, CohesionMetrics> entry : classCohesion.entrySet()) {
+            String className = entry.getKey();
+            CohesionMetrics metrics = entry.getValue();
+            sink.element("class", className)
+                    .field("cohesion", metrics.getRatio())
+                    .field("lcom1", metrics.getLcom1())
+                    .field("lcom4", metrics.getLcom4())
+                    .field("tcc", metrics.getTcc())
+                    .field("lcc", metrics.getLcc())
+                    .end();
+            histogram.add(metrics.getRatio());
+            quantiles.add(metrics.getRatio());
         }
+        generateCohesionHistogram(sourcePath, histogram, quantiles, sink);
+
+        DependencyGraph graph = getDependencyGraph();
+        printDependencySummary(graph, sink);
+        generateDependencyGraphs(artifactPrefix == null ? sourcePath : artifactPrefix.toString(), graph, sink);
     }
 
     /**
-     * Analyse le projet source et calcule la cohésion pour chaque classe publique.
+     * Écrit la cohésion des classes publiques du fichier modifié, les classes disparues
+     * et les dépendances ajoutées ou supprimées. Les noms simples qui ne se résolvent
+     * qu'avec le reste du projet (même package, imports à la demande) sont donnés tels
+     * qu'ils sont écrits. Si le résultat précédent a été oublié par le cache, chaque
+     * classe est écrite comme modifiée et les dépendances ne sont pas comparées.
      */
-    public Map<String, Double> analyzeProject(String sourcePath) throws Exception {
-        Map<String, Double> classCohesion = new HashMap<>();
-    
-        SourceRoot sourceRoot = new SourceRoot(Paths.get(sourcePath));
-        sourceRoot.tryToParseParallelized();
-    
-        for (CompilationUnit cu : sourceRoot.getCompilationUnits()) {
-            for (ClassOrInterfaceDeclaration cls : cu.findAll(ClassOrInterfaceDeclaration.class)) {
-                if (cls.isPublic()) {
-                    double cohesion = calculateCohesion(cls);
-                    classCohesion.put(cls.getNameAsString(), cohesion);
+    @Override
+    public void reportChange(String file, FileCohesion before, FileCohesion after, boolean evicted,
+                             ReportSink sink) {
+        Set<String> classes = new TreeSet<>();
+        if (before != null) {
+            classes.addAll(before.classCohesion.keySet());
+        }
+        if (after != null) {
+            classes.addAll(after.classCohesion.keySet());
+        }
+        for (String className : classes) {
+            CohesionMetrics metrics = after == null ? null : after.classCohesion.get(className);
+            if (metrics == null) {
+                sink.element("class", className).field("file", file).field("change", "removed").end();
+            } else {
+                sink.element("class", className)
+                        .field("file", file)
+                        .field("change", evicted || before != null && before.classCohesion.containsKey(className)
+                                ? "changed" : "added")
+                        .field("cohesion", metrics.getRatio())
+                        .field("lcom1", metrics.getLcom1())
+                        .field("lcom4", metrics.getLcom4())
+                        .field("tcc", metrics.getTcc())
+                        .field("lcc", metrics.getLcc())
+                        .end();
+            }
+            if (evicted) {
+                continue;
+            }
+            Set<String> previous = before == null ? Collections.<String>emptySet() : before.dependencies.dependenciesOf(className);
+            Set<String> next = after == null ? Collections.<String>emptySet() : after.dependencies.dependenciesOf(className);
+            for (String target : new TreeSet<>(next)) {
+                if (!previous.contains(target)) {
+                    sink.element("dependency", className).field("change", "added").field("target", target).end();
+                }
+            }
+            for (String target : new TreeSet<>(previous)) {
+                if (!next.contains(target)) {
+                    sink.element("dependency", className).field("change", "removed").field("target", target).end();
                 }
             }
         }
-    
+    }
+
+    /**
+     * Choisit les formats dans lesquels le graphe de dépendances est exporté.
+     */
+    public ClassCohesionCalculator setGraphFormats(Set<GraphFormat> graphFormats) {
+        this.graphFormats = EnumSet.copyOf(graphFormats);
+        return this;
+    }
+
+    /**
+     * Choisit où sont écrits les fichiers de graphe : {@code <préfixe>_dependency_graph.<extension>}
+     * et {@code <préfixe>_package_graph.<extension>}. Par défaut, ils sont écrits à côté
+     * de la racine du projet analysé.
+     *
+     * @param artifactPrefix Le début du chemin des fichiers, ou null pour la racine du projet.
+     * @return Ce calculateur, pour chaîner les appels.
+     */
+    public ClassCohesionCalculator setArtifactPrefix(Path artifactPrefix) {
+        this.artifactPrefix = artifactPrefix;
+        return this;
+    }
+
+    /**
+     * Exporte aussi le graphe agrégé par package, dont les arêtes sont pondérées par
+     * le nombre de dépendances entre types.
+     */
+    public ClassCohesionCalculator setPackageGraph(boolean packageGraph) {
+        this.packageGraph = packageGraph;
+        return this;
+    }
+
+    /**
+     * Choisit les intervalles de l'histogramme de cohésion, entre 0 et 1 :
+     * {@code linear:<n>} pour n intervalles de même largeur, {@code log:<n>} pour n
+     * intervalles en échelle logarithmique à partir de {@value #MIN_LOG_COHESION}.
+     */
+    public ClassCohesionCalculator setCohesionBuckets(String spec) {
+        String[] parts = spec.split(":");
+        int buckets = parts.length > 1 ? Integer.parseInt(parts[1]) : DEFAULT_COHESION_BUCKETS;
+        switch (parts[0]) {
+            case "linear":
+                cohesionBuckets = DoubleHistogram.linear(0.0, 1.0, buckets);
+                break;
+            case "log":
+                cohesionBuckets = DoubleHistogram.logarithmic(MIN_LOG_COHESION, 1.0, buckets);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cohesion buckets: " + spec);
+        }
+        return this;
+    }
+
+    public Map<String, CohesionMetrics> getClassCohesion() {
         return classCohesion;
     }
 
     /**
-     * Trouve toutes les dépendances entre les classes du projet.
-     */
-    public Map<String, Set<String>> findDependencies(String sourcePath) throws Exception {
-        Map<String, Set<String>> dependencies = new HashMap<>();
-        
-        SourceRoot sourceRoot = new SourceRoot(Paths.get(sourcePath));
-        sourceRoot.tryToParseParallelized();
-        
-        for (CompilationUnit cu : sourceRoot.getCompilationUnits()) {
-            for (ClassOrInterfaceDeclaration cls : cu.findAll(ClassOrInterfaceDeclaration.class)) {
-                if (cls.isPublic()) {
-                    Set<String> classDependencies = new HashSet<>();
-                    
-                    // Analyser les types utilisés dans les champs
-                    cls.getFields().forEach(field -> {
-                        field.getVariable(0).getType().ifClassOrInterfaceType(type -> {
-                            classDependencies.add(type.getNameAsString());
-                        });
-                    });
-                    
-                    // Analyser les types utilisés dans les méthodes
-                    cls.getMethods().forEach(method -> {
-                        method.findAll(ClassOrInterfaceType.class).forEach(type -> {
-                            classDependencies.add(type.getNameAsString());
-                        });
-                    });
-                    
-                    dependencies.put(cls.getNameAsString(), classDependencies);
-                }
-            }
+     * @return Le nombre de lignes de chaque classe publique, indexé par nom complètement qualifié.
+     */
+    public Map<String, Integer> getClassLines() {
+        return classLines;
+    }
+
+    /**
+     * @return Le graphe des dépendances entre types, résolu en noms complètement qualifiés.
+     */
+    public DependencyGraph getDependencyGraph() {
+        return dependencies.build();
+    }
+
+    /**
+     * Trouve les types dont dépend une classe, à partir de ses champs et de ses méthodes,
+     * tels qu'ils sont écrits dans le source (la résolution se fait par fichier, voir
+     * {@link FileDependencies}).
+     */
+    public Set<String> findDependencies(ClassOrInterfaceDeclaration cls) {
+        Set<String> classDependencies = new HashSet<>();
+        for (ClassOrInterfaceType type : FileDependencies.referencedTypes(cls)) {
+            classDependencies.add(type.getNameWithScope());
         }
-        
-        return dependencies;
+        return classDependencies;
     }
 
     /**
      * Calcule la cohésion d'une classe en fonction du nombre de méthodes qui accèdent aux champs.
      */
-    private double calculateCohesion(ClassOrInterfaceDeclaration cls) {
-        if (cls.getMethods().isEmpty()) {
-            return 0.0;
+    public double calculateCohesion(ClassOrInterfaceDeclaration cls) {
+        return calculateMetrics(cls).getRatio();
+    }
+
+    /**
+     * Calcule LCOM1, LCOM4, TCC, LCC et la proportion de méthodes utilisant les champs
+     * à partir de la matrice méthodes × champs de la classe.
+     */
+    public CohesionMetrics calculateMetrics(ClassOrInterfaceDeclaration cls) {
+        return CohesionMetrics.compute(cls);
+    }
+
+    /**
+     * @return L'histogramme des cohésions des classes analysées, avec les intervalles
+     *         configurés, fusionnable avec celui d'autres projets.
+     */
+    public DoubleHistogram getCohesionHistogram() {
+        DoubleHistogram histogram = cohesionBuckets.emptyCopy();
+        for (CohesionMetrics metrics : classCohesion.values()) {
+            histogram.add(metrics.getRatio());
         }
+        return histogram;
+    }
 
-        long fieldAccessingMethods = 0;
-        for (MethodDeclaration method : cls.getMethods()) {
-            if (method.findAll(com.github.javaparser.ast.expr.FieldAccessExpr.class).size() > 0) {
-                fieldAccessingMethods++;
-            }
+    /**
+     * @return Les quantiles des cohésions des classes analysées, fusionnables avec
+     *         ceux d'autres projets.
+     */
+    public QuantileSketch getCohesionQuantiles() {
+        QuantileSketch quantiles = new QuantileSketch();
+        for (CohesionMetrics metrics : classCohesion.values()) {
+            quantiles.add(metrics.getRatio());
         }
-        
-        return (double) fieldAccessingMethods / cls.getMethods().size();
+        return quantiles;
     }
 
     /**
-     * Génère un histogramme des valeurs de cohésion.
+     * Écrit l'histogramme des valeurs de cohésion, intervalle par intervalle, et leurs
+     * quantiles.
+     *
+     * @param projectPath Le sujet des enregistrements : un projet, ou un ensemble de projets.
      */
-    private static void generateCohesionHistogram(Map<String, Map<String, Double>> allProjectCohesion) {
-        for (Map.Entry<String, Map<String, Double>> project : allProjectCohesion.entrySet()) {
-            Map<String, Double> cohesionValues = project.getValue();
-            Map<Double, Integer> cohesionFrequency = new HashMap<>();
-            
-            for (Double cohesion : cohesionValues.values()) {
-                cohesionFrequency.merge(cohesion, 1, Integer::sum);
+    public static void generateCohesionHistogram(String projectPath, DoubleHistogram histogram,
+                                                 QuantileSketch quantiles, ReportSink sink) {
+        sink.message("Cohesion Histogram for Project: " + projectPath);
+        if (histogram.below() > 0) {
+            sink.aggregate("cohesionBucket", projectPath)
+                    .field("to", histogram.lowerBound(0))
+                    .field("classes", histogram.below())
+                    .end();
+        }
+        for (int bucket = 0; bucket < histogram.bucketCount(); bucket++) {
+            if (histogram.count(bucket) > 0) {
+                sink.aggregate("cohesionBucket", projectPath)
+                        .field("from", histogram.lowerBound(bucket))
+                        .field("to", histogram.upperBound(bucket))
+                        .field("classes", histogram.count(bucket))
+                        .end();
             }
-
-            System.out.println("Cohesion Histogram for Project: " + project.getKey());
-            cohesionFrequency.forEach((cohesion, count) -> 
-                System.out.println("Cohesion " + cohesion + ": " + count + " classes")
-            );
+        }
+        if (quantiles.count() > 0) {
+            sink.aggregate("cohesionSummary", projectPath)
+                    .field("classes", quantiles.count())
+                    .field("p50", quantiles.quantile(0.5))
+                    .field("p90", quantiles.quantile(0.9))
+                    .field("p99", quantiles.quantile(0.99))
+                    .field("max", quantiles.max())
+                    .end();
         }
     }
 
     /**
-     * Génère et sauvegarde le graphe de dépendances au format DOT.
+     * Affiche les cycles de dépendances et les types les plus utilisés, avec leur
+     * fan-in, leur fan-out et la taille de leur fermeture transitive.
      */
-    private static void generateDependencyGraphs(Map<String, Map<String, Set<String>>> allProjectDependencies) {
-        for (Map.Entry<String, Map<String, Set<String>>> project : allProjectDependencies.entrySet()) {
-            String projectName = project.getKey();
-            Map<String, Set<String>> dependencies = project.getValue();
-            StringBuilder dotGraph = new StringBuilder();
-            dotGraph.append("digraph G {\n");
+    private static void printDependencySummary(DependencyGraph graph, ReportSink sink) {
+        GraphAlgorithms.Components components = GraphAlgorithms.stronglyConnectedComponents(graph);
+        int[] fanIn = GraphAlgorithms.fanIn(graph);
+        int[] fanOut = GraphAlgorithms.fanOut(graph);
+        long[] closure = GraphAlgorithms.transitiveClosureSizes(graph, components);
 
-            for (Map.Entry<String, Set<String>> classDependencies : dependencies.entrySet()) {
-                String className = classDependencies.getKey();
-                Set<String> dependentClasses = classDependencies.getValue();
-                for (String dependentClass : dependentClasses) {
-                    dotGraph.append("\"").append(className).append("\" -> \"").append(dependentClass).append("\";\n");
-                }
+        sink.aggregate("dependencyGraph", "Dependency graph")
+                .field("types", graph.nodeCount())
+                .field("dependencies", graph.edgeCount())
+                .field("cycles", components.cycleCount())
+                .end();
+
+        Map<Integer, List<String>> cycles = new TreeMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int component = components.of(node);
+            if (components.size(component) > 1) {
+                cycles.computeIfAbsent(component, c -> new ArrayList<>()).add(graph.name(node));
             }
+        }
+        for (List<String> cycle : cycles.values()) {
+            Collections.sort(cycle);
+            sink.aggregate("cycle", "Cycle").field("types", String.join(", ", cycle)).end();
+        }
 
-            dotGraph.append("}\n");
+        // Sélection des types ayant le plus grand fan-in, sans trier tout le graphe
+        boolean[] selected = new boolean[graph.nodeCount()];
+        sink.message("Most used types:");
+        for (int rank = 0; rank < Math.min(TOP_TYPES, graph.nodeCount()); rank++) {
+            int best = -1;
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                if (!selected[node] && (best < 0 || fanIn[node] > fanIn[best])) {
+                    best = node;
+                }
+            }
+            selected[best] = true;
+            sink.aggregate("mostUsedType", graph.name(best))
+                    .field("fanIn", fanIn[best])
+                    .field("fanOut", fanOut[best])
+                    .field("transitiveDependencies", closure[best])
+                    .end();
+        }
+    }
 
-            try (FileWriter writer = new FileWriter(projectName + "_dependency_graph.dot")) {
-                writer.write(dotGraph.toString());
-                System.out.println("Dependency graph saved to: " + projectName + "_dependency_graph.dot");
-            } catch (Exception e) {
-                System.err.println("Error saving dependency graph: " + e.getMessage());
-                e.printStackTrace();
+    /**
+     * Sauvegarde le graphe de dépendances dans chacun des formats demandés, et
+     * éventuellement le graphe agrégé par package.
+     */
+    private void generateDependencyGraphs(String projectName, DependencyGraph graph, ReportSink sink) {
+        for (GraphFormat format : graphFormats) {
+            saveDependencyGraph(graph, format, Paths.get(projectName + "_dependency_graph." + format.getExtension()), sink);
+            if (packageGraph) {
+                saveDependencyGraph(graph.aggregateByPackage(), format,
+                        Paths.get(projectName + "_package_graph." + format.getExtension()), sink);
             }
         }
     }
-}
\ No newline at end of file
+
+    private static void saveDependencyGraph(DependencyGraph graph, GraphFormat format, Path file, ReportSink sink) {
+        try {
+            GraphWriter.write(graph, format, file);
+            sink.message("Dependency graph saved to: " + file);
+        } catch (Exception e) {
+            System.err.println("Error saving dependency graph: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
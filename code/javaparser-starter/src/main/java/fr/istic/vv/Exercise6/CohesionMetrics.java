@@ -0,0 +1,304 @@
+package fr.istic.vv.Exercise6;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import fr.istic.vv.analysis.FileBudget;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Métriques de cohésion d'une classe calculées à partir de sa matrice méthodes × champs.
+ * <p>
+ * Le corps de chaque méthode n'est parcouru qu'une fois pour remplir deux matrices de
+ * bits stockées en mots de 64 bits : les champs utilisés par chaque méthode (accès
+ * {@code this.x} ou nom simple non masqué par une variable locale ou un paramètre) et
+ * les méthodes de la classe qu'elle appelle. Les comparaisons de paires de méthodes se
+ * font ensuite mot par mot (ET logique), sans reparcourir l'AST.
+ * <ul>
+ *     <li>LCOM1 : nombre de paires de méthodes sans champ commun ;</li>
+ *     <li>LCOM4 : nombre de composantes connexes du graphe où deux méthodes sont reliées
+ *     si elles partagent un champ ou si l'une appelle l'autre ;</li>
+ *     <li>TCC : proportion de paires de méthodes partageant directement un champ ;</li>
+ *     <li>LCC : proportion de paires reliées directement ou indirectement par des champs partagés ;</li>
+ *     <li>ratio : proportion de méthodes utilisant au moins un champ (l'ancienne mesure).</li>
+ * </ul>
+ */
+public class CohesionMetrics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int methods;
+    private final int fields;
+    private final long lcom1;
+    private final int lcom4;
+    private final double tcc;
+    private final double lcc;
+    private final double ratio;
+
+    private CohesionMetrics(int methods, int fields, long lcom1, int lcom4, double tcc, double lcc, double ratio) {
+        this.methods = methods;
+        this.fields = fields;
+        this.lcom1 = lcom1;
+        this.lcom4 = lcom4;
+        this.tcc = tcc;
+        this.lcc = lcc;
+        this.ratio = ratio;
+    }
+
+    public int getMethods() {
+        return methods;
+    }
+
+    public int getFields() {
+        return fields;
+    }
+
+    public long getLcom1() {
+        return lcom1;
+    }
+
+    public int getLcom4() {
+        return lcom4;
+    }
+
+    public double getTcc() {
+        return tcc;
+    }
+
+    public double getLcc() {
+        return lcc;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * Calcule les métriques de cohésion d'une classe à partir de ses champs et de ses méthodes
+     * propres (celles des types imbriqués ne sont pas prises en compte).
+     */
+    public static CohesionMetrics compute(ClassOrInterfaceDeclaration cls) {
+        Map<String, Integer> fieldIndex = new HashMap<>();
+        for (FieldDeclaration field : cls.getFields()) {
+            for (VariableDeclarator variable : field.getVariables()) {
+                fieldIndex.putIfAbsent(variable.getNameAsString(), fieldIndex.size());
+            }
+        }
+        List<MethodDeclaration> methods = cls.getMethods();
+        int methodCount = methods.size();
+        int fieldWords = words(fieldIndex.size());
+        int methodWords = words(methodCount);
+        // Un appel par nom désigne toutes les surcharges de ce nom
+        Map<String, long[]> overloads = new HashMap<>();
+        for (int m = 0; m < methodCount; m++) {
+            set(overloads.computeIfAbsent(methods.get(m).getNameAsString(), name -> new long[methodWords]), m);
+        }
+
+        long[][] usage = new long[methodCount][];
+        long[][] calls = new long[methodCount][];
+        UsageCollector collector = new UsageCollector(fieldIndex, overloads, fieldWords, methodWords);
+        for (int m = 0; m < methodCount; m++) {
+            collector.reset();
+            methods.get(m).walk(collector);
+            usage[m] = collector.fieldsUsed();
+            calls[m] = collector.calls;
+        }
+        return fromMatrix(usage, calls, fieldIndex.size());
+    }
+
+    /**
+     * Calcule les métriques à partir des matrices de bits méthodes × champs et méthodes × méthodes.
+     */
+    static CohesionMetrics fromMatrix(long[][] usage, long[][] calls, int fieldCount) {
+        int methodCount = usage.length;
+        if (methodCount == 0) {
+            return new CohesionMetrics(0, fieldCount, 0, 0, 0.0, 0.0, 0.0);
+        }
+
+        int usingMethods = 0;
+        for (long[] row : usage) {
+            if (!isEmpty(row)) {
+                usingMethods++;
+            }
+        }
+
+        int[] fieldParent = identity(methodCount);
+        int[] lcom4Parent = identity(methodCount);
+        long sharingPairs = 0;
+        for (int i = 0; i < methodCount; i++) {
+            FileBudget.checkpoint();
+            for (int j = i + 1; j < methodCount; j++) {
+                if (intersects(usage[i], usage[j])) {
+                    sharingPairs++;
+                    union(fieldParent, i, j);
+                    union(lcom4Parent, i, j);
+                } else if (isSet(calls[i], j) || isSet(calls[j], i)) {
+                    union(lcom4Parent, i, j);
+                }
+            }
+        }
+
+        long pairs = (long) methodCount * (methodCount - 1) / 2;
+        int[] componentSizes = new int[methodCount];
+        int lcom4 = 0;
+        for (int m = 0; m < methodCount; m++) {
+            componentSizes[find(fieldParent, m)]++;
+            if (find(lcom4Parent, m) == m) {
+                lcom4++;
+            }
+        }
+        long connectedPairs = 0;
+        for (int size : componentSizes) {
+            connectedPairs += (long) size * (size - 1) / 2;
+        }
+
+        double tcc = pairs == 0 ? 0.0 : (double) sharingPairs / pairs;
+        double lcc = pairs == 0 ? 0.0 : (double) connectedPairs / pairs;
+        return new CohesionMetrics(methodCount, fieldCount, pairs - sharingPairs, lcom4, tcc, lcc,
+                (double) usingMethods / methodCount);
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean intersects(long[] left, long[] right) {
+        for (int w = 0; w < left.length; w++) {
+            if ((left[w] & right[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static int[] identity(int size) {
+        int[] parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+        return parent;
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Remplit les lignes de la matrice pour une méthode en un seul parcours de son corps.
+     * Le parcours en pré-ordre de JavaParser utilise une pile explicite : une expression
+     * profondément imbriquée n'épuise pas la pile du thread.
+     */
+    private static class UsageCollector implements Consumer<Node> {
+        private final Map<String, Integer> fieldIndex;
+        private final Map<String, long[]> overloads;
+        private final int fieldWords;
+        private final int methodWords;
+
+        private long[] qualified;
+        private long[] simple;
+        private long[] shadowed;
+        private int visited;
+        long[] calls;
+
+        UsageCollector(Map<String, Integer> fieldIndex, Map<String, long[]> overloads, int fieldWords, int methodWords) {
+            this.fieldIndex = fieldIndex;
+            this.overloads = overloads;
+            this.fieldWords = fieldWords;
+            this.methodWords = methodWords;
+        }
+
+        void reset() {
+            qualified = new long[fieldWords];
+            simple = new long[fieldWords];
+            shadowed = new long[fieldWords];
+            calls = new long[methodWords];
+        }
+
+        /**
+         * Les champs accédés par {@code this.x}, plus ceux désignés par un nom simple
+         * qu'aucune variable locale ou paramètre de même nom ne masque.
+         */
+        long[] fieldsUsed() {
+            long[] used = qualified;
+            for (int w = 0; w < fieldWords; w++) {
+                used[w] |= simple[w] & ~shadowed[w];
+            }
+            return used;
+        }
+
+        @Override
+        public void accept(Node node) {
+            FileBudget.checkpoint(++visited);
+            if (node instanceof FieldAccessExpr) {
+                FieldAccessExpr access = (FieldAccessExpr) node;
+                if (access.getScope() instanceof ThisExpr && !((ThisExpr) access.getScope()).getTypeName().isPresent()) {
+                    mark(qualified, access.getNameAsString());
+                }
+            } else if (node instanceof NameExpr) {
+                mark(simple, ((NameExpr) node).getNameAsString());
+            } else if (node instanceof VariableDeclarator) {
+                mark(shadowed, ((VariableDeclarator) node).getNameAsString());
+            } else if (node instanceof Parameter) {
+                mark(shadowed, ((Parameter) node).getNameAsString());
+            } else if (node instanceof MethodCallExpr) {
+                MethodCallExpr call = (MethodCallExpr) node;
+                boolean ownMethod = !call.getScope().isPresent()
+                        || (call.getScope().get() instanceof ThisExpr
+                        && !((ThisExpr) call.getScope().get()).getTypeName().isPresent());
+                long[] called = ownMethod ? overloads.get(call.getNameAsString()) : null;
+                if (called != null) {
+                    for (int w = 0; w < methodWords; w++) {
+                        calls[w] |= called[w];
+                    }
+                }
+            }
+        }
+
+        private void mark(long[] bits, String name) {
+            Integer index = fieldIndex.get(name);
+            if (index != null) {
+                set(bits, index);
+            }
+        }
+    }
+}
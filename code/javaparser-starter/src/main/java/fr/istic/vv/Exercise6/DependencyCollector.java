@@ -0,0 +1,96 @@
+package fr.istic.vv.Exercise6;
+
+import fr.istic.vv.graph.DependencyGraph;
+import fr.istic.vv.graph.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumule les dépendances de tous les fichiers sous forme d'identifiants entiers
+ * puis construit le {@link DependencyGraph} du projet. Les noms simples non résolus
+ * sont rattachés au premier type du projet qui correspond (même package puis imports
+ * à la demande) ; à défaut, il s'agit d'un type externe désigné par son nom simple.
+ * En attendant leur résolution, ces noms sont gardés dans une table à part : seules
+ * les cibles résolues deviennent des nœuds du graphe.
+ */
+class DependencyCollector {
+
+    private final SymbolTable symbols = new SymbolTable();
+    private final DependencyGraph.Builder builder = new DependencyGraph.Builder(symbols);
+    private final BitSet declared = new BitSet();
+
+    // Packages candidats de chaque fichier ayant des noms non résolus
+    private final List<String[]> contexts = new ArrayList<>();
+    private final SymbolTable pendingNames = new SymbolTable();
+    private int[] pendingSource = new int[64];
+    private int[] pendingName = new int[64];
+    private int[] pendingContext = new int[64];
+    private int pendingSize;
+
+    void add(FileDependencies dependencies) {
+        for (String type : dependencies.declaredTypes) {
+            declared.set(symbols.intern(type));
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.resolved.entrySet()) {
+            int source = symbols.intern(entry.getKey());
+            for (String target : entry.getValue()) {
+                builder.addEdge(source, symbols.intern(target));
+            }
+        }
+        int context = -1;
+        for (Map.Entry<String, Set<String>> entry : dependencies.unresolved.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            if (context < 0) {
+                context = contexts.size();
+                String[] packages = new String[dependencies.onDemandImports.size() + 1];
+                packages[0] = dependencies.packageName;
+                for (int i = 1; i < packages.length; i++) {
+                    packages[i] = dependencies.onDemandImports.get(i - 1);
+                }
+                contexts.add(packages);
+            }
+            int source = symbols.intern(entry.getKey());
+            for (String name : entry.getValue()) {
+                addPending(source, pendingNames.intern(name), context);
+            }
+        }
+    }
+
+    private void addPending(int source, int name, int context) {
+        if (pendingSize == pendingSource.length) {
+            pendingSource = Arrays.copyOf(pendingSource, pendingSize * 2);
+            pendingName = Arrays.copyOf(pendingName, pendingSize * 2);
+            pendingContext = Arrays.copyOf(pendingContext, pendingSize * 2);
+        }
+        pendingSource[pendingSize] = source;
+        pendingName[pendingSize] = name;
+        pendingContext[pendingSize] = context;
+        pendingSize++;
+    }
+
+    DependencyGraph build() {
+        for (int i = 0; i < pendingSize; i++) {
+            builder.addEdge(pendingSource[i], resolve(pendingName[i], contexts.get(pendingContext[i])));
+        }
+        pendingSize = 0;
+        return builder.build();
+    }
+
+    private int resolve(int simpleName, String[] packages) {
+        String name = pendingNames.name(simpleName);
+        for (String packageName : packages) {
+            int candidate = symbols.find(packageName.isEmpty() ? name : packageName + "." + name);
+            if (candidate >= 0 && declared.get(candidate)) {
+                return candidate;
+            }
+        }
+        return symbols.intern(name);
+    }
+}
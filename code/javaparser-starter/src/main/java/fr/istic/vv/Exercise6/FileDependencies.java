@@ -0,0 +1,158 @@
+package fr.istic.vv.Exercise6;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.TypeParameter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Les dépendances des classes publiques d'un fichier, exprimées en noms complètement
+ * qualifiés grâce à la déclaration de package, aux imports et aux types déclarés
+ * dans le fichier. Un nom simple qui ne peut être résolu qu'en connaissant les types
+ * des autres fichiers (même package ou import à la demande) est conservé avec les
+ * packages candidats et résolu par {@link DependencyCollector} en fin d'analyse.
+ */
+public class FileDependencies implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final String packageName;
+    final List<String> onDemandImports = new ArrayList<>();
+    final List<String> declaredTypes = new ArrayList<>();
+    final Map<String, Set<String>> resolved = new LinkedHashMap<>();
+    final Map<String, Set<String>> unresolved = new LinkedHashMap<>();
+
+    private FileDependencies(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Extrait les dépendances des classes publiques d'une CompilationUnit.
+     */
+    public static FileDependencies extract(CompilationUnit cu) {
+        FileDependencies dependencies = new FileDependencies(
+                cu.getPackageDeclaration().map(p -> p.getNameAsString()).orElse(""));
+
+        Map<String, String> knownTypes = new HashMap<>();
+        for (ImportDeclaration importDeclaration : cu.getImports()) {
+            if (importDeclaration.isStatic()) {
+                continue;
+            }
+            String name = importDeclaration.getNameAsString();
+            if (importDeclaration.isAsterisk()) {
+                dependencies.onDemandImports.add(name);
+            } else {
+                knownTypes.put(name.substring(name.lastIndexOf('.') + 1), name);
+            }
+        }
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+            String qualifiedName = type.getFullyQualifiedName().orElse(null);
+            if (qualifiedName != null) {
+                dependencies.declaredTypes.add(qualifiedName);
+                knownTypes.putIfAbsent(type.getNameAsString(), qualifiedName);
+            }
+        }
+
+        for (ClassOrInterfaceDeclaration cls : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            if (cls.isPublic()) {
+                String className = cls.getFullyQualifiedName().orElse(cls.getNameAsString());
+                Set<String> resolved = new HashSet<>();
+                Set<String> unresolved = new HashSet<>();
+                for (ClassOrInterfaceType type : referencedTypes(cls)) {
+                    String name = type.getNameWithScope();
+                    int dot = name.indexOf('.');
+                    String first = dot < 0 ? name : name.substring(0, dot);
+                    String known = knownTypes.get(first);
+                    if (known != null) {
+                        resolved.add(dot < 0 ? known : known + name.substring(dot));
+                    } else if (dot >= 0) {
+                        resolved.add(name);
+                    } else if (!isTypeParameter(type, name)) {
+                        unresolved.add(name);
+                    }
+                }
+                dependencies.resolved.put(className, resolved);
+                dependencies.unresolved.put(className, unresolved);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Les dépendances d'une classe du fichier : les noms résolus dans le fichier et, tels
+     * qu'ils sont écrits, les noms simples qui ne peuvent l'être qu'avec le reste du projet.
+     */
+    Set<String> dependenciesOf(String className) {
+        Set<String> names = new HashSet<>();
+        Set<String> resolvedNames = resolved.get(className);
+        if (resolvedNames != null) {
+            names.addAll(resolvedNames);
+            names.addAll(unresolved.get(className));
+        }
+        return names;
+    }
+
+    /**
+     * Les types référencés par les champs et les méthodes d'une classe, sans les
+     * qualificatifs des noms qualifiés (pour {@code a.b.C}, seul {@code C} est retenu).
+     */
+    static List<ClassOrInterfaceType> referencedTypes(ClassOrInterfaceDeclaration cls) {
+        List<ClassOrInterfaceType> types = new ArrayList<>();
+        for (FieldDeclaration field : cls.getFields()) {
+            addReferencedTypes(field, types);
+        }
+        for (MethodDeclaration method : cls.getMethods()) {
+            addReferencedTypes(method, types);
+        }
+        return types;
+    }
+
+    private static void addReferencedTypes(Node node, List<ClassOrInterfaceType> types) {
+        for (ClassOrInterfaceType type : node.findAll(ClassOrInterfaceType.class)) {
+            boolean isScope = type.getParentNode()
+                    .filter(parent -> parent instanceof ClassOrInterfaceType
+                            && ((ClassOrInterfaceType) parent).getScope().map(scope -> scope == type).orElse(false))
+                    .isPresent();
+            if (!isScope) {
+                types.add(type);
+            }
+        }
+    }
+
+    /**
+     * Un nom simple qui désigne un paramètre de type d'une méthode ou d'une classe englobante.
+     */
+    private static boolean isTypeParameter(Node node, String name) {
+        Node current = node;
+        while (current != null) {
+            List<TypeParameter> parameters = null;
+            if (current instanceof MethodDeclaration) {
+                parameters = ((MethodDeclaration) current).getTypeParameters();
+            } else if (current instanceof ClassOrInterfaceDeclaration) {
+                parameters = ((ClassOrInterfaceDeclaration) current).getTypeParameters();
+            }
+            if (parameters != null) {
+                for (TypeParameter parameter : parameters) {
+                    if (parameter.getNameAsString().equals(name)) {
+                        return true;
+                    }
+                }
+            }
+            current = current.getParentNode().orElse(null);
+        }
+        return false;
+    }
+}
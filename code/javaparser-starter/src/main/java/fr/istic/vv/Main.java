@@ -1,46 +1,137 @@
-package fr.istic.vv;
-
-import fr.istic.vv.Exercise4.PrivateFieldAnalyzer;
-import fr.istic.vv.Exercise5.CyclomaticComplexityCalculator;
-import fr.istic.vv.Exercise6.ClassCohesionCalculator;
-import com.github.javaparser.utils.SourceRoot;
-import java.io.File;
-import java.io.IOException;
-import java.util.Map;
-
-public class Main {
-
-    public static void main(String[] args) throws IOException {
-        if (args.length == 0) {
-            System.err.println("Should provide the path to the source code");
-            System.exit(1);
-        }
-
-        File file = new File(args[0]);
-        if (!file.exists() || !file.isDirectory() || !file.canRead()) {
-            System.err.println("Provide a path to an existing readable directory");
-            System.exit(2);
-        }
-
-        String sourcePath = args[0];
-        SourceRoot root = new SourceRoot(file.toPath());
-
-        PublicElementsPrinter printer = new PublicElementsPrinter();
-        root.parse("", (localPath, absolutePath, result) -> {
-            result.ifSuccessful(unit -> unit.accept(printer, null));
-            return SourceRoot.Callback.Result.DONT_SAVE;
-        });
-
-        System.out.println("\nStarting analysis for private fields without getters:");
-
-        PrivateFieldAnalyzer.main(new String[] { sourcePath });
-
-        System.out.println("\nStarting class cohesion analysis...");
-
-        ClassCohesionCalculator.main(new String[] { sourcePath });
-
-        CyclomaticComplexityCalculator.main(new String[] { sourcePath });
-
-        System.out.println("\nAnalysis complete.");
-    }
-}
+package fr.istic.vv;
+
+import fr.istic.vv.Exercise5.CyclomaticComplexityCalculator;
+import fr.istic.vv.Exercise6.ClassCohesionCalculator;
+import fr.istic.vv.Exercise6.CohesionMetrics;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.WatchDaemon;
+import fr.istic.vv.report.ReportFormat;
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.store.MetricsStore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+public class Main {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Should provide the path to the source code");
+            System.err.println("Usage: java Main <path-to-source> " + PipelineSettings.USAGE
+                    + " [--format text|jsonl|csv|binary] [--output <report-file>] [--aggregates-only]"
+                    + " [--store <metrics-directory> --commit <commit-id>]"
+                    + " [--watch [--debounce <millis>] [--watch-cache <files>]]");
+            System.exit(1);
+        }
+
+        File file = new File(args[0]);
+        if (!file.exists() || !file.isDirectory() || !file.canRead()) {
+            System.err.println("Provide a path to an existing readable directory");
+            System.exit(2);
+        }
+
+        PipelineSettings settings = new PipelineSettings();
+        ReportFormat reportFormat = ReportFormat.TEXT;
+        Path reportFile = null;
+        boolean aggregatesOnly = false;
+        Path storeDirectory = null;
+        String commit = null;
+        boolean watch = false;
+        long debounce = -1;
+        int watchCache = -1;
+
+        for (int i = 1; i < args.length; i++) {
+            int consumed = settings.parseOption(args, i);
+            if (consumed >= 0) {
+                i = consumed;
+                continue;
+            }
+            switch (args[i]) {
+                case "--format":
+                    reportFormat = ReportFormat.parse(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--output":
+                    reportFile = Paths.get(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--aggregates-only":
+                    aggregatesOnly = true;
+                    break;
+                case "--store":
+                    storeDirectory = Paths.get(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--commit":
+                    commit = PipelineSettings.optionValue(args, ++i);
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--debounce":
+                    debounce = Long.parseLong(PipelineSettings.optionValue(args, ++i));
+                    break;
+                case "--watch-cache":
+                    watchCache = Integer.parseInt(PipelineSettings.optionValue(args, ++i));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        if (storeDirectory != null && commit == null) {
+            System.err.println("--store requires --commit <commit-id>");
+            System.exit(1);
+        }
+        if (storeDirectory != null && !(settings.runs("cohesion") && settings.runs("complexity"))) {
+            System.err.println("--store requires the cohesion and complexity analyses");
+            System.exit(1);
+        }
+
+        if (watch) {
+            try (ReportSink sink = reportFormat.open(reportFile)) {
+                sink.setElementsEnabled(!aggregatesOnly);
+                WatchDaemon daemon = new WatchDaemon(file.toPath(), () -> settings.newPipeline(file.toPath()), sink);
+                if (debounce >= 0) {
+                    daemon.setDebounce(debounce);
+                }
+                if (watchCache > 0) {
+                    daemon.setCacheSize(watchCache);
+                }
+                daemon.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        AnalysisPipeline pipeline = settings.newPipeline(file.toPath());
+        try (ReportSink sink = reportFormat.open(reportFile)) {
+            sink.setElementsEnabled(!aggregatesOnly);
+            pipeline.setReportSink(sink).run();
+            sink.message("\nAnalysis complete.");
+        }
+
+        if (storeDirectory != null) {
+            try (MetricsStore store = MetricsStore.open(storeDirectory)) {
+                recordMetrics(store.append(commit), settings.complexityCalculator, settings.cohesionCalculator);
+            }
+        }
+    }
+
+    /**
+     * Ajoute les métriques de chaque méthode et de chaque classe à l'historique.
+     */
+    private static void recordMetrics(MetricsStore.Commit commit, CyclomaticComplexityCalculator complexityCalculator,
+                                      ClassCohesionCalculator cohesionCalculator) throws IOException {
+        for (int method = 0; method < complexityCalculator.getMethodCount(); method++) {
+            commit.method(complexityCalculator.getMethodSignature(method),
+                    complexityCalculator.getComplexity(method), complexityCalculator.getLineCount(method));
+        }
+        Map<String, Integer> classLines = cohesionCalculator.getClassLines();
+        for (Map.Entry<String, CohesionMetrics> cls : cohesionCalculator.getClassCohesion().entrySet()) {
+            commit.type(cls.getKey(), cls.getValue().getRatio(), classLines.getOrDefault(cls.getKey(), 0));
+        }
+        commit.commit();
+    }
+}
@@ -0,0 +1,178 @@
+package fr.istic.vv;
+
+import fr.istic.vv.Exercise4.PrivateFieldAnalyzer;
+import fr.istic.vv.Exercise5.CyclomaticComplexityCalculator;
+import fr.istic.vv.Exercise6.ClassCohesionCalculator;
+import fr.istic.vv.analysis.AnalysisPipeline;
+import fr.istic.vv.analysis.ExecutionMode;
+import fr.istic.vv.graph.GraphFormat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Les options qui configurent le pipeline et ses passes, communes à l'analyse d'un
+ * projet ({@link Main}) et à l'analyse en lot ({@link BatchAnalysis}). Le mode
+ * surveillance crée un pipeline neuf, avec les mêmes options, à chaque rapport complet.
+ */
+class PipelineSettings {
+
+    static final String USAGE = "[--cache <cache-file>] [--threads <count>]"
+            + " [--executor fork-join|virtual] [--max-concurrent-files <count>]"
+            + " [--file-budget <millis>] [--max-file-size <KiB>] [--quarantine <file>]"
+            + " [--graph-format dot,graphml,csv,binary] [--package-graph]"
+            + " [--cohesion-buckets linear:<n>|log:<n>] [--analyses public,private,cohesion,complexity]"
+            + " [--clone-min-nodes <count>] [--metrics] [--jfr-events]";
+
+    private static final List<String> ANALYSES = Arrays.asList("public", "private", "cohesion", "complexity");
+
+    Path cacheFile;
+    int threads;
+    ExecutionMode executionMode = ExecutionMode.FORK_JOIN;
+    int maxConcurrentFiles;
+    long fileBudgetMillis;
+    long maxFileKib;
+    Path quarantineFile;
+    Set<GraphFormat> graphFormats;
+    boolean packageGraph;
+    String cohesionBuckets;
+    int cloneMinNodes;
+    Set<String> analyses;
+    boolean instrumented;
+    boolean jfrEvents;
+    ClassCohesionCalculator cohesionCalculator;
+    CyclomaticComplexityCalculator complexityCalculator;
+
+    /**
+     * Lit une option du pipeline.
+     *
+     * @param args  Les arguments de la ligne de commande.
+     * @param index L'index de l'option.
+     * @return L'index du dernier argument consommé, ou -1 si l'option ne concerne pas le pipeline.
+     */
+    int parseOption(String[] args, int index) {
+        switch (args[index]) {
+            case "--cache":
+                cacheFile = Paths.get(optionValue(args, ++index));
+                return index;
+            case "--threads":
+                threads = Integer.parseInt(optionValue(args, ++index));
+                return index;
+            case "--executor":
+                executionMode = ExecutionMode.parse(optionValue(args, ++index));
+                return index;
+            case "--max-concurrent-files":
+                maxConcurrentFiles = Integer.parseInt(optionValue(args, ++index));
+                return index;
+            case "--file-budget":
+                fileBudgetMillis = Long.parseLong(optionValue(args, ++index));
+                return index;
+            case "--max-file-size":
+                maxFileKib = Long.parseLong(optionValue(args, ++index));
+                return index;
+            case "--quarantine":
+                quarantineFile = Paths.get(optionValue(args, ++index));
+                return index;
+            case "--graph-format":
+                graphFormats = EnumSet.noneOf(GraphFormat.class);
+                for (String format : optionValue(args, ++index).split(",")) {
+                    graphFormats.add(GraphFormat.parse(format.trim()));
+                }
+                return index;
+            case "--package-graph":
+                packageGraph = true;
+                return index;
+            case "--cohesion-buckets":
+                cohesionBuckets = optionValue(args, ++index);
+                return index;
+            case "--clone-min-nodes":
+                cloneMinNodes = Integer.parseInt(optionValue(args, ++index));
+                return index;
+            case "--analyses":
+                analyses = new HashSet<>();
+                for (String analysis : optionValue(args, ++index).split(",")) {
+                    String name = analysis.trim();
+                    if (!ANALYSES.contains(name)) {
+                        System.err.println("Unknown analysis: " + name);
+                        System.exit(1);
+                    }
+                    analyses.add(name);
+                }
+                return index;
+            case "--metrics":
+                instrumented = true;
+                return index;
+            case "--jfr-events":
+                jfrEvents = true;
+                return index;
+            default:
+                return -1;
+        }
+    }
+
+    AnalysisPipeline newPipeline(Path sourceRoot) {
+        cohesionCalculator = new ClassCohesionCalculator().setPackageGraph(packageGraph);
+        if (graphFormats != null) {
+            cohesionCalculator.setGraphFormats(graphFormats);
+        }
+        if (cohesionBuckets != null) {
+            cohesionCalculator.setCohesionBuckets(cohesionBuckets);
+        }
+        complexityCalculator = new CyclomaticComplexityCalculator();
+        if (cloneMinNodes > 0) {
+            complexityCalculator.setCloneMinNodes(cloneMinNodes);
+        }
+
+        // Chaque fichier est parsé une seule fois puis transmis à toutes les analyses
+        AnalysisPipeline pipeline = new AnalysisPipeline(sourceRoot)
+                .setCache(cacheFile)
+                .setInstrumentation(instrumented)
+                .setJfrEvents(jfrEvents);
+        if (runs("public")) {
+            pipeline.register(new PublicElementsPrinter());
+        }
+        if (runs("private")) {
+            pipeline.register(new PrivateFieldAnalyzer());
+        }
+        if (runs("cohesion")) {
+            pipeline.register(cohesionCalculator);
+        }
+        if (runs("complexity")) {
+            pipeline.register(complexityCalculator);
+        }
+        if (threads > 0) {
+            pipeline.setThreads(threads);
+        }
+        if (executionMode != ExecutionMode.FORK_JOIN) {
+            pipeline.setExecutionMode(executionMode);
+        }
+        if (maxConcurrentFiles > 0) {
+            pipeline.setMaxConcurrentFiles(maxConcurrentFiles);
+        }
+        // Mode protégé : budget de temps et de taille par fichier, quarantaine
+        pipeline.setFileBudget(fileBudgetMillis)
+                .setMaxFileSize(maxFileKib * 1024)
+                .setQuarantine(quarantineFile);
+        return pipeline;
+    }
+
+    /**
+     * @return true si l'analyse est sélectionnée ; toutes le sont par défaut.
+     */
+    boolean runs(String analysis) {
+        return analyses == null || analyses.contains(analysis);
+    }
+
+    static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            System.err.println("Missing value for option " + args[index - 1]);
+            System.exit(1);
+        }
+        return args[index];
+    }
+}
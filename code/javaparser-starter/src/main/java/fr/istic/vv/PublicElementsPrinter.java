@@ -1,48 +1,164 @@
-package fr.istic.vv;
-
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.*;
-import com.github.javaparser.ast.visitor.VoidVisitorWithDefaults;
-
-
-// This class visits a compilation unit and
-// prints all public enum, classes or interfaces along with their public methods
-public class PublicElementsPrinter extends VoidVisitorWithDefaults<Void> {
-
-    @Override
-    public void visit(CompilationUnit unit, Void arg) {
-        for(TypeDeclaration<?> type : unit.getTypes()) {
-            type.accept(this, null);
-        }
-    }
-
-    public void visitTypeDeclaration(TypeDeclaration<?> declaration, Void arg) {
-        if(!declaration.isPublic()) return;
-        System.out.println(declaration.getFullyQualifiedName().orElse("[Anonymous]"));
-        for(MethodDeclaration method : declaration.getMethods()) {
-            method.accept(this, arg);
-        }
-        // Printing nested types in the top level
-        for(BodyDeclaration<?> member : declaration.getMembers()) {
-            if (member instanceof TypeDeclaration)
-                member.accept(this, arg);
-        }
-    }
-
-    @Override
-    public void visit(ClassOrInterfaceDeclaration declaration, Void arg) {
-        visitTypeDeclaration(declaration, arg);
-    }
-
-    @Override
-    public void visit(EnumDeclaration declaration, Void arg) {
-        visitTypeDeclaration(declaration, arg);
-    }
-
-    @Override
-    public void visit(MethodDeclaration declaration, Void arg) {
-        if(!declaration.isPublic()) return;
-        System.out.println("  " + declaration.getDeclarationAsString(true, true));
-    }
-
-}
+package fr.istic.vv;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.visitor.VoidVisitorWithDefaults;
+import fr.istic.vv.analysis.Analyzer;
+import fr.istic.vv.analysis.ParseProfile;
+import fr.istic.vv.analysis.SourceScan;
+import fr.istic.vv.report.ReportSink;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// This class visits a compilation unit and
+// prints all public enum, classes or interfaces along with their public methods
+public class PublicElementsPrinter extends VoidVisitorWithDefaults<Void> implements Analyzer<List<PublicElementsPrinter.PublicType>> {
+
+    /**
+     * Un type public et les signatures de ses méthodes publiques, dans l'ordre du source.
+     */
+    public static final class PublicType implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final List<String> methods = new ArrayList<>();
+
+        PublicType(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+    }
+
+    // Types mis de côté au lieu d'être écrits, null pour écrire directement dans le rapport
+    private final List<PublicType> types;
+    private ReportSink sink;
+    private PublicType currentType;
+
+    public PublicElementsPrinter() {
+        this.types = null;
+    }
+
+    /**
+     * Pour utiliser la classe comme simple visiteur : les éléments publics sont écrits
+     * dans le rapport donné au fil du parcours.
+     */
+    public PublicElementsPrinter(ReportSink sink) {
+        this.types = null;
+        this.sink = sink;
+    }
+
+    private PublicElementsPrinter(List<PublicType> types) {
+        this.types = types;
+    }
+
+    @Override
+    public String getName() {
+        return "public elements";
+    }
+
+    /**
+     * Seules les signatures sont affichées : les corps de méthodes ne sont pas parsés.
+     */
+    @Override
+    public ParseProfile getParseProfile() {
+        return ParseProfile.SIGNATURES;
+    }
+
+    /**
+     * Seuls les types publics de premier niveau et leurs membres sont affichés.
+     */
+    @Override
+    public boolean accepts(SourceScan scan) {
+        return scan.hasPublicTopLevelType();
+    }
+
+    @Override
+    public List<PublicType> analyze(CompilationUnit unit) {
+        PublicElementsPrinter collector = new PublicElementsPrinter(new ArrayList<PublicType>());
+        unit.accept(collector, null);
+        return collector.types;
+    }
+
+    @Override
+    public void open(ReportSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void collect(List<PublicType> result) {
+        for (PublicType type : result) {
+            write(type);
+        }
+    }
+
+    @Override
+    public void report(Path sourceRoot, ReportSink sink) {
+        // Les éléments publics sont écrits au fil de la collecte
+    }
+
+    @Override
+    public void visit(CompilationUnit unit, Void arg) {
+        for(TypeDeclaration<?> type : unit.getTypes()) {
+            type.accept(this, null);
+        }
+    }
+
+    public void visitTypeDeclaration(TypeDeclaration<?> declaration, Void arg) {
+        if(!declaration.isPublic()) return;
+        PublicType type = new PublicType(declaration.getFullyQualifiedName().orElse("[Anonymous]"));
+        currentType = type;
+        for(MethodDeclaration method : declaration.getMethods()) {
+            method.accept(this, arg);
+        }
+        if (types == null) {
+            write(type);
+        } else {
+            types.add(type);
+        }
+        // Printing nested types in the top level
+        for(BodyDeclaration<?> member : declaration.getMembers()) {
+            if (member instanceof TypeDeclaration)
+                member.accept(this, arg);
+        }
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration declaration, Void arg) {
+        visitTypeDeclaration(declaration, arg);
+    }
+
+    @Override
+    public void visit(EnumDeclaration declaration, Void arg) {
+        visitTypeDeclaration(declaration, arg);
+    }
+
+    @Override
+    public void visit(MethodDeclaration declaration, Void arg) {
+        if(!declaration.isPublic() || currentType == null) return;
+        currentType.methods.add(declaration.getDeclarationAsString(true, true));
+    }
+
+    /**
+     * Écrit le type puis ses méthodes, qui le désignent comme propriétaire.
+     */
+    private void write(PublicType type) {
+        if (sink == null) {
+            throw new IllegalStateException("No report sink: call open(sink) or use PublicElementsPrinter(ReportSink)");
+        }
+        sink.element("publicType", type.name).end();
+        for (String method : type.methods) {
+            sink.element("publicMethod", method).field("owner", type.name).end();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package fr.istic.vv.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache persistant des résultats par fichier. Une entrée est indexée par le chemin
+ * relatif du fichier et n'est réutilisée que si l'empreinte SHA-256 de son contenu
+ * n'a pas changé. Le cache entier est ignoré si la version de l'outil ou la liste
+ * des passes diffère de celle qui l'a produit.
+ */
+public class AnalysisCache implements ResultCache {
+
+    /**
+     * À incrémenter dès que le format d'un résultat par fichier change.
+     */
+    public static final String TOOL_VERSION = "11";
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final byte[] hash;
+        final Object[] results;
+
+        Entry(byte[] hash, Object[] results) {
+            this.hash = hash;
+            this.results = results;
+        }
+    }
+
+    private final Path file;
+    private final String version;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private AnalysisCache(Path file, String version, Map<String, Entry> previous) {
+        this.file = file;
+        this.version = version;
+        this.previous = previous;
+    }
+
+    /**
+     * Charge le cache depuis le disque. Un fichier absent, illisible ou produit par
+     * une autre version donne un cache vide.
+     *
+     * @param file    Le fichier du cache.
+     * @param version La version de l'outil et des passes enregistrées.
+     * @return Le cache chargé.
+     */
+    @SuppressWarnings("unchecked")
+    public static AnalysisCache load(Path file, String version) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (version.equals(in.readUTF())) {
+                    entries = (Map<String, Entry>) in.readObject();
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                System.err.println("Ignoring unreadable analysis cache " + file + ": " + e.getMessage());
+            }
+        }
+        return new AnalysisCache(file, version, entries);
+    }
+
+    /**
+     * Calcule l'empreinte du contenu d'un fichier.
+     */
+    public static byte[] hash(byte[] content) {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        return digest.digest(content);
+    }
+
+    /**
+     * Calcule l'empreinte des octets restants d'un tampon, sans les copier dans un tableau.
+     */
+    public static byte[] hash(ByteBuffer content) {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        digest.update(content);
+        return digest.digest();
+    }
+
+    /**
+     * Retourne les résultats mis en cache pour un fichier dont le contenu n'a pas changé,
+     * et les conserve pour la prochaine sauvegarde.
+     *
+     * @param key  Le chemin relatif du fichier.
+     * @param hash L'empreinte du contenu actuel.
+     * @return Les résultats de chaque passe, ou null si le fichier doit être réanalysé.
+     */
+    @Override
+    public Object[] lookup(String key, byte[] hash) {
+        Entry entry = previous.get(key);
+        if (entry == null || !Arrays.equals(entry.hash, hash)) {
+            return null;
+        }
+        current.put(key, entry);
+        return entry.results;
+    }
+
+    /**
+     * Enregistre les résultats d'un fichier qui vient d'être analysé. Les résultats
+     * qui ne sont pas sérialisables ne sont pas mis en cache.
+     */
+    @Override
+    public void store(String key, byte[] hash, Object[] results) {
+        for (Object result : results) {
+            if (result != null && !(result instanceof Serializable)) {
+                return;
+            }
+        }
+        current.put(key, new Entry(hash, results));
+    }
+
+    /**
+     * Écrit sur le disque les entrées des fichiers vus lors de cette analyse ; les
+     * fichiers supprimés disparaissent ainsi du cache.
+     */
+    public void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeUTF(version);
+            out.writeObject(new HashMap<>(current));
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
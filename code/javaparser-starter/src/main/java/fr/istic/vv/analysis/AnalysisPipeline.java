@@ -0,0 +1,685 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ast.CompilationUnit;
+import fr.istic.vv.report.ReportFormat;
+import fr.istic.vv.report.ReportSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Analyse un projet source en ne parsant chaque fichier qu'une seule fois.
+ * Chaque CompilationUnit est transmise à toutes les passes enregistrées, réduite
+ * en résultats compacts puis libérée : la mémoire utilisée dépend du nombre de
+ * threads et non de la taille du projet.
+ * <p>
+ * Lecture, parsing et analyse de chaque fichier s'exécutent sur un ForkJoinPool par
+ * vol de tâches. Les résultats sont fusionnés dans l'ordre des fichiers, si bien que
+ * les rapports sont identiques quel que soit le nombre de threads. Dans le mode
+ * {@link ExecutionMode#VIRTUAL_THREADS}, chaque fichier est plutôt une tâche sur son
+ * propre thread virtuel, et le nombre d'AST en mémoire est borné par un sémaphore.
+ * <p>
+ * Avec un cache ({@link #setCache(Path)}), seuls les fichiers dont le contenu a
+ * changé depuis la dernière analyse sont parsés ; les résultats des autres sont
+ * relus depuis le cache puis fusionnés comme s'ils venaient d'être calculés.
+ * <p>
+ * Chaque passe déclare le {@link ParseProfile profil de parsing} dont elle a besoin
+ * et peut refuser un fichier d'après une {@link SourceScan pré-analyse lexicale} :
+ * un fichier n'est parsé qu'avec le profil le plus complet des passes qui l'acceptent,
+ * et pas du tout si aucune ne l'accepte.
+ * <p>
+ * Les rapports sont écrits dans un {@link ReportSink}, par défaut un rapport texte
+ * sur la sortie standard. Avec l'instrumentation ({@link #setInstrumentation(boolean)}),
+ * le rapport se termine par un résumé de l'analyse ({@link RunMetrics}) ; sans elle,
+ * seule une ligne sur la sortie d'erreur signale les fichiers qui n'ont pas pu être parsés.
+ * <p>
+ * Un fichier qui épuise la pile (le parser de JavaParser est récursif) est toujours
+ * écarté sans interrompre l'analyse. En mode protégé ({@link #setFileBudget(long)},
+ * {@link #setMaxFileSize(long)}, {@link #setQuarantine(Path)}), un fichier trop gros,
+ * en quarantaine ou trop long à analyser l'est aussi : la durée totale reste
+ * prévisible même face à des sources pathologiques.
+ */
+public class AnalysisPipeline {
+
+    private final Path sourceRoot;
+    private final List<Analyzer<?>> analyzers = new ArrayList<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ExecutionMode executionMode = ExecutionMode.FORK_JOIN;
+    private int maxConcurrentFiles;
+    private Path cacheFile;
+    private ResultCache resultCache;
+    private ResultCache cache;
+    private ReportSink reportSink;
+    private boolean instrumented;
+    private boolean jfrEvents;
+    private RunMetrics metrics;
+    private ForkJoinPool sharedPool;
+    private long fileBudgetMillis;
+    private long maxFileBytes;
+    private Path quarantineFile;
+    private FileGuard guard;
+
+    public AnalysisPipeline(Path sourceRoot) {
+        this.sourceRoot = sourceRoot;
+    }
+
+    /**
+     * Enregistre une passe d'analyse. Les rapports sont produits dans l'ordre d'enregistrement.
+     *
+     * @param analyzer La passe à enregistrer.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline register(Analyzer<?> analyzer) {
+        analyzers.add(analyzer);
+        return this;
+    }
+
+    /**
+     * Fixe le nombre de threads qui parsent et analysent les fichiers, c'est-à-dire
+     * aussi le nombre maximal d'AST présents simultanément en mémoire.
+     *
+     * @param threads Le nombre de threads, au moins 1.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Choisit comment les fichiers sont répartis entre les threads. Les rapports ne
+     * dépendent pas du mode choisi.
+     *
+     * @param executionMode Le mode d'exécution.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setExecutionMode(ExecutionMode executionMode) {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS && !ExecutionMode.hasVirtualThreads()) {
+            System.err.println("Virtual threads are not available in this runtime, using platform threads");
+        }
+        this.executionMode = executionMode;
+        return this;
+    }
+
+    /**
+     * Fixe le nombre maximal de fichiers analysés simultanément, donc d'AST en
+     * mémoire, dans le mode {@link ExecutionMode#VIRTUAL_THREADS}. Par défaut, quatre
+     * fois le nombre de threads, pour recouvrir les attentes de lecture.
+     *
+     * @param maxConcurrentFiles Le nombre de fichiers, au moins 1.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setMaxConcurrentFiles(int maxConcurrentFiles) {
+        if (maxConcurrentFiles < 1) {
+            throw new IllegalArgumentException("maxConcurrentFiles must be at least 1");
+        }
+        this.maxConcurrentFiles = maxConcurrentFiles;
+        return this;
+    }
+
+    /**
+     * Exécute l'analyse sur un pool partagé avec d'autres pipelines plutôt que sur un
+     * pool créé pour l'occasion. Le pool n'est pas arrêté à la fin de l'analyse et son
+     * parallélisme remplace le nombre de threads du pipeline. Dans le mode
+     * {@link ExecutionMode#VIRTUAL_THREADS}, seul le parcours des répertoires l'utilise.
+     *
+     * @param pool Le pool partagé, ou null pour un pool propre au pipeline.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setPool(ForkJoinPool pool) {
+        this.sharedPool = pool;
+        return this;
+    }
+
+    /**
+     * Accorde à chaque fichier un budget de temps pour sa lecture, son parsing et ses
+     * analyses. Un fichier qui le dépasse est abandonné au point de contrôle suivant
+     * (voir {@link FileBudget}) et mis en quarantaine si une liste est tenue.
+     *
+     * @param fileBudgetMillis Le budget en millisecondes, ou 0 sans limite.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setFileBudget(long fileBudgetMillis) {
+        if (fileBudgetMillis < 0) {
+            throw new IllegalArgumentException("fileBudgetMillis must not be negative");
+        }
+        this.fileBudgetMillis = fileBudgetMillis;
+        return this;
+    }
+
+    /**
+     * Écarte sans les lire les fichiers plus gros que la taille donnée.
+     *
+     * @param maxFileBytes La taille maximale en octets, ou 0 sans limite.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setMaxFileSize(long maxFileBytes) {
+        if (maxFileBytes < 0) {
+            throw new IllegalArgumentException("maxFileBytes must not be negative");
+        }
+        this.maxFileBytes = maxFileBytes;
+        return this;
+    }
+
+    /**
+     * Tient une liste de quarantaine : les fichiers qu'elle contient ne sont pas lus,
+     * et ceux qui épuisent leur budget de temps ou la pile y sont ajoutés.
+     *
+     * @param quarantineFile Le fichier de la liste, créé au premier fichier abandonné.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setQuarantine(Path quarantineFile) {
+        this.quarantineFile = quarantineFile;
+        return this;
+    }
+
+    /**
+     * Active le cache incrémental des résultats par fichier.
+     *
+     * @param cacheFile Le fichier du cache, créé s'il n'existe pas.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        return this;
+    }
+
+    /**
+     * Choisit le rapport dans lequel les passes écrivent leurs résultats. Le pipeline
+     * le vide à la fin de {@link #run()} mais ne le ferme pas.
+     *
+     * @param reportSink Le rapport.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setReportSink(ReportSink reportSink) {
+        this.reportSink = reportSink;
+        return this;
+    }
+
+    public ReportSink getReportSink() {
+        if (reportSink == null) {
+            reportSink = ReportFormat.TEXT.create(ReportFormat.standardOutput());
+        }
+        return reportSink;
+    }
+
+    /**
+     * Utilise un cache de résultats déjà en mémoire plutôt qu'un fichier, par exemple
+     * celui du mode surveillance qui conserve les résultats entre deux analyses.
+     * Ignoré si un fichier de cache est aussi configuré.
+     *
+     * @param resultCache Le cache des résultats par fichier.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Mesure chaque phase de l'analyse et termine le rapport par un résumé. Désactivée,
+     * l'instrumentation ne coûte qu'un test par phase.
+     *
+     * @param instrumented Vrai pour mesurer l'analyse.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setInstrumentation(boolean instrumented) {
+        this.instrumented = instrumented;
+        return this;
+    }
+
+    /**
+     * Émet aussi chaque phase mesurée comme un événement JFR ; active l'instrumentation.
+     * Ignoré, avec un avertissement, si le module jdk.jfr n'est pas disponible.
+     *
+     * @param jfrEvents Vrai pour émettre les événements JFR.
+     * @return Ce pipeline, pour chaîner les appels.
+     */
+    public AnalysisPipeline setJfrEvents(boolean jfrEvents) {
+        if (jfrEvents && !RunMetrics.isJfrAvailable()) {
+            System.err.println("JFR events are not available in this runtime");
+            jfrEvents = false;
+        }
+        this.jfrEvents = jfrEvents;
+        this.instrumented |= jfrEvents;
+        return this;
+    }
+
+    /**
+     * @return Les mesures de la dernière analyse, ou null si l'instrumentation est désactivée.
+     */
+    public RunMetrics getRunMetrics() {
+        return metrics;
+    }
+
+    public List<Analyzer<?>> getAnalyzers() {
+        return Collections.unmodifiableList(analyzers);
+    }
+
+    public Path getSourceRoot() {
+        return sourceRoot;
+    }
+
+    /**
+     * Parse chaque fichier du projet, le fait visiter par toutes les passes et
+     * libère son AST aussitôt les résultats compacts obtenus.
+     */
+    public void analyze() {
+        ForkJoinPool pool = sharedPool != null ? sharedPool : new ForkJoinPool(threads);
+        boolean virtual = executionMode == ExecutionMode.VIRTUAL_THREADS;
+        int permits = maxConcurrentFiles > 0 ? maxConcurrentFiles : 4 * pool.getParallelism();
+        if (instrumented) {
+            String executor = !virtual ? executionMode.getLabel()
+                    : ExecutionMode.hasVirtualThreads() ? executionMode.getLabel() : "platform";
+            metrics = new RunMetrics(analyzers, virtual ? permits : pool.getParallelism(), executor, jfrEvents);
+        } else {
+            metrics = null;
+        }
+        RunMetrics.Recorder recorder = metrics == null ? null : metrics.recorder();
+        if (recorder != null) {
+            recorder.begin();
+        }
+        guard = new FileGuard(fileBudgetMillis * 1_000_000, maxFileBytes, quarantineFile);
+        List<Path> files = discoverFiles(pool);
+        if (recorder != null) {
+            recorder.lap(RunMetrics.Phase.DISCOVERY, -1);
+            recorder.end();
+        }
+        for (Analyzer<?> analyzer : analyzers) {
+            analyzer.open(getReportSink());
+        }
+        AnalysisCache diskCache = cacheFile == null ? null : AnalysisCache.load(cacheFile, cacheVersion());
+        cache = diskCache != null ? diskCache : resultCache;
+        OrderedCollector collector = new OrderedCollector(analyzers, files.size(), metrics);
+        try {
+            if (virtual) {
+                analyzeOnePerTask(files, collector, permits);
+            } else if (!files.isEmpty()) {
+                pool.invoke(new FileRangeTask(files, 0, files.size(), collector));
+            }
+        } finally {
+            if (pool != sharedPool) {
+                pool.shutdownNow();
+            }
+        }
+        if (!collector.isComplete()) {
+            throw new IllegalStateException("Some analysis results were not collected");
+        }
+        if (collector.getFailedFiles() > 0) {
+            System.err.println(collector.getFailedFiles() + " file(s) could not be parsed"
+                    + (metrics == null ? "" : ", see the parseError records"));
+        }
+        reportSkippedFiles();
+        if (diskCache != null) {
+            try {
+                diskCache.save();
+            } catch (IOException e) {
+                System.err.println("Error saving analysis cache: " + e.getMessage());
+            }
+        }
+        cache = null;
+    }
+
+    private void reportSkippedFiles() {
+        List<FileGuard.SkippedFile> skipped = guard.drainSkippedFiles();
+        if (metrics != null) {
+            for (FileGuard.SkippedFile file : skipped) {
+                metrics.skipped(file.file, file.reason, file.nanos);
+            }
+        }
+        if (!skipped.isEmpty()) {
+            System.err.println(skipped.size() + " file(s) skipped"
+                    + (metrics == null ? "" : ", see the skippedFile records"));
+        }
+        try {
+            guard.saveQuarantine();
+        } catch (IOException e) {
+            System.err.println("Error saving quarantine list: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Analyse le projet puis écrit le rapport de chaque passe.
+     */
+    public void run() {
+        analyze();
+        ReportSink sink = getReportSink();
+        RunMetrics.Recorder recorder = metrics == null ? null : metrics.recorder();
+        if (recorder != null) {
+            recorder.begin();
+        }
+        for (int i = 0; i < analyzers.size(); i++) {
+            analyzers.get(i).report(sourceRoot, sink);
+            if (recorder != null) {
+                recorder.lap(RunMetrics.Phase.REPORT, i);
+            }
+        }
+        sink.flush();
+        if (recorder != null) {
+            recorder.lap(RunMetrics.Phase.WRITE, -1);
+            recorder.end();
+            metrics.report(sourceRoot.toString(), sink);
+            sink.flush();
+        }
+    }
+
+    /**
+     * Lit, parse et analyse un fichier.
+     *
+     * @return Les résultats de chaque passe, ou null si le fichier n'a pas pu être parsé.
+     */
+    private Object[] analyzeFile(Path file) throws IOException {
+        return analyzeFile(file, cache, metrics == null ? null : metrics.recorder());
+    }
+
+    /**
+     * Lit, parse et analyse un fichier en consultant le cache donné. Le fichier n'est
+     * transmis qu'aux passes qui l'acceptent d'après sa pré-analyse lexicale, et parsé
+     * avec le plus complet de leurs profils ; s'il n'intéresse aucune passe, il n'est
+     * pas parsé du tout.
+     *
+     * Les règles du mode protégé restent celles de la dernière analyse, et un fichier
+     * qui épuise la pile est écarté : une source pathologique enregistrée pendant la
+     * surveillance n'arrête pas le daemon.
+     *
+     * @return Les résultats de chaque passe (null pour celles qui n'ont pas accepté le
+     *         fichier), ou null si le fichier n'a pas pu être parsé. Un fichier écarté
+     *         donne des résultats vides et apparaît dans {@link #drainSkippedFiles()}.
+     */
+    Object[] analyzeFile(Path file, ResultCache cache) throws IOException {
+        Object[] results = analyzeFile(file, cache, null);
+        try {
+            guard().saveQuarantine();
+        } catch (IOException e) {
+            System.err.println("Error saving quarantine list: " + e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * @return Les fichiers écartés par {@link #analyzeFile(Path, ResultCache)} depuis
+     *         l'appel précédent.
+     */
+    List<FileGuard.SkippedFile> drainSkippedFiles() {
+        return guard().drainSkippedFiles();
+    }
+
+    /**
+     * @return Les règles du mode protégé, créées à la première analyse et conservées
+     *         pour la durée de vie du pipeline.
+     */
+    private FileGuard guard() {
+        if (guard == null) {
+            guard = new FileGuard(fileBudgetMillis * 1_000_000, maxFileBytes, quarantineFile);
+        }
+        return guard;
+    }
+
+    /**
+     * Lit, parse et analyse un fichier en mesurant chaque phase si un enregistreur est
+     * donné. Un fichier écarté donne des résultats vides : il n'est ni transmis aux
+     * passes, ni compté comme un échec de parsing.
+     */
+    private Object[] analyzeFile(Path file, ResultCache cache, RunMetrics.Recorder recorder) throws IOException {
+        FileGuard guard = guard();
+        String key = keyOf(file);
+        String reason = guard.admit(key, file);
+        long started = System.nanoTime();
+        boolean quarantine = false;
+        if (reason == null) {
+            if (guard.getFileNanos() > 0) {
+                FileBudget.open(guard.getFileNanos());
+            }
+            try {
+                return readAndAnalyze(file, cache, recorder);
+            } catch (BudgetExceededException e) {
+                reason = e.getMessage();
+                quarantine = true;
+            } catch (StackOverflowError e) {
+                reason = "stack overflow";
+                quarantine = true;
+            } finally {
+                FileBudget.close();
+            }
+        }
+        guard.skip(key, reason, System.nanoTime() - started, quarantine);
+        return new Object[analyzers.size()];
+    }
+
+    private Object[] readAndAnalyze(Path file, ResultCache cache, RunMetrics.Recorder recorder) throws IOException {
+        ParseContext context = ParseContext.acquire();
+        try {
+            if (recorder == null) {
+                context.reader().read(file);
+                return analyzeContent(file, cache, null, context);
+            }
+            recorder.begin();
+            try {
+                recorder.fileRead(keyOf(file), context.reader().read(file).remaining());
+                recorder.lap(RunMetrics.Phase.READ, -1);
+                return analyzeContent(file, cache, recorder, context);
+            } finally {
+                recorder.end();
+            }
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Analyse le contenu d'un fichier que le lecteur du contexte vient de lire. Le texte
+     * décodé n'existe que dans le tampon du lecteur : aucune chaîne n'est créée pour le fichier.
+     */
+    private Object[] analyzeContent(Path file, ResultCache cache, RunMetrics.Recorder recorder,
+                                    ParseContext context) {
+        SourceReader reader = context.reader();
+        String key = null;
+        byte[] hash = null;
+        Object[] results = null;
+        if (cache != null) {
+            key = keyOf(file);
+            hash = AnalysisCache.hash(reader.content());
+            results = cache.lookup(key, hash);
+            if (recorder != null) {
+                recorder.lap(RunMetrics.Phase.CACHE, -1);
+                if (results != null) {
+                    recorder.cached();
+                }
+            }
+        }
+        if (results == null) {
+            char[] source = reader.decode();
+            int length = reader.length();
+            if (recorder != null) {
+                recorder.lap(RunMetrics.Phase.DECODE, -1);
+            }
+            SourceScan scan = SourceScan.of(source, length);
+            boolean[] accepted = new boolean[analyzers.size()];
+            ParseProfile profile = null;
+            for (int i = 0; i < accepted.length; i++) {
+                accepted[i] = analyzers.get(i).accepts(scan);
+                if (accepted[i]) {
+                    profile = analyzers.get(i).getParseProfile().max(profile);
+                }
+            }
+            if (recorder != null) {
+                recorder.lap(RunMetrics.Phase.SCAN, -1);
+            }
+            results = new Object[analyzers.size()];
+            if (profile != null) {
+                profile.prepare(source, length);
+                ParseResult<CompilationUnit> result = context.parser(profile).parse(ParseStart.COMPILATION_UNIT,
+                        new CharArrayProvider(source, length));
+                if (recorder != null) {
+                    recorder.lap(RunMetrics.Phase.PARSE, -1);
+                }
+                // Le parser ne consulte l'échéance qu'en lisant les caractères, avant de construire l'AST
+                FileBudget.checkpoint();
+                if (!result.isSuccessful() || !result.getResult().isPresent()) {
+                    if (recorder != null) {
+                        recorder.parseError(result.getProblems().isEmpty()
+                                ? "no compilation unit" : result.getProblems().get(0).getVerboseMessage());
+                    }
+                    return null;
+                }
+                CompilationUnit unit = result.getResult().get();
+                for (int i = 0; i < results.length; i++) {
+                    if (accepted[i]) {
+                        results[i] = analyzers.get(i).analyze(unit);
+                        if (recorder != null) {
+                            recorder.lap(RunMetrics.Phase.ANALYZE, i);
+                        }
+                    }
+                }
+            } else if (recorder != null) {
+                recorder.notParsed();
+            }
+            if (cache != null) {
+                cache.store(key, hash, results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Soumet chaque fichier comme une tâche indépendante : lecture, parsing, analyse
+     * puis publication de ses résultats. Les tâches sont soumises dans l'ordre des
+     * fichiers et un sémaphore équitable les laisse entrer dans cet ordre, pour que le
+     * collecteur n'ait à retenir que peu de résultats en avance. La première erreur
+     * d'une tâche est relancée une fois toutes les tâches terminées.
+     *
+     * @param permits Le nombre maximal de fichiers en cours d'analyse.
+     */
+    private void analyzeOnePerTask(List<Path> files, OrderedCollector collector, int permits) {
+        Semaphore inFlight = new Semaphore(permits, true);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService executor = ExecutionMode.newTaskExecutor(permits);
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                int index = i;
+                executor.execute(() -> {
+                    try {
+                        inFlight.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        if (failure.get() == null) {
+                            collector.publish(index, analyzeFile(files.get(index)));
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, new UncheckedIOException("Unable to read " + files.get(index), e));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Un gros projet sur un disque réseau peut dépasser ce délai
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Découpe récursivement la liste des fichiers pour que les threads inactifs
+     * puissent voler la moitié du travail restant d'un autre thread.
+     */
+    private class FileRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+        private final OrderedCollector collector;
+
+        FileRangeTask(List<Path> files, int from, int to, OrderedCollector collector) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.collector = collector;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    collector.publish(from, analyzeFile(files.get(from)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read " + files.get(from), e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FileRangeTask(files, from, middle, collector),
+                    new FileRangeTask(files, middle, to, collector));
+        }
+    }
+
+    /**
+     * @return Le chemin du fichier relatif à la racine du projet, avec des '/' comme séparateurs.
+     */
+    String keyOf(Path file) {
+        return sourceRoot.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Indique si un répertoire du projet contient des sources à analyser : comme
+     * SourceRoot, les répertoires cachés ou dont le nom n'est pas un identifiant
+     * Java valide sont ignorés.
+     */
+    boolean isSourceDirectory(Path dir) throws IOException {
+        return SourceFiles.isSourceDirectory(sourceRoot, dir);
+    }
+
+    /**
+     * La version du cache dépend de celle de l'outil et des passes enregistrées, dans l'ordre.
+     */
+    private String cacheVersion() {
+        StringBuilder version = new StringBuilder(AnalysisCache.TOOL_VERSION);
+        for (Analyzer<?> analyzer : analyzers) {
+            version.append(':').append(analyzer.getClass().getName());
+        }
+        return version.toString();
+    }
+
+    /**
+     * Liste les fichiers Java du projet, triés par chemin, en parcourant les
+     * répertoires en parallèle sur le pool de l'analyse.
+     */
+    private List<Path> discoverFiles(ForkJoinPool pool) {
+        return SourceFiles.discover(sourceRoot, pool);
+    }
+}
@@ -0,0 +1,95 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+import fr.istic.vv.report.ReportSink;
+
+import java.nio.file.Path;
+
+/**
+ * Une passe d'analyse enregistrée dans un {@link AnalysisPipeline}.
+ * Le pipeline analyse chaque fichier une seule fois et transmet la
+ * CompilationUnit obtenue à toutes les passes enregistrées.
+ * <p>
+ * Chaque passe réduit une CompilationUnit en un résultat compact (métriques,
+ * arêtes de dépendances...) qui ne doit conserver aucune référence vers l'AST :
+ * celui-ci est libéré dès que toutes les passes l'ont visité.
+ *
+ * @param <R> Le type du résultat produit pour un fichier.
+ */
+public interface Analyzer<R> {
+
+    /**
+     * @return Le nom de la passe, utilisé dans les en-têtes de rapport.
+     */
+    String getName();
+
+    /**
+     * Appelée avant l'analyse du premier fichier avec le rapport dans lequel la passe
+     * écrira, pour les passes qui publient leurs résultats au fil de la collecte.
+     *
+     * @param sink Le rapport de l'analyse.
+     */
+    default void open(ReportSink sink) {
+    }
+
+    /**
+     * @return Le profil de parsing dont la passe a besoin. Par défaut, l'AST complet
+     *         avec les commentaires.
+     */
+    default ParseProfile getParseProfile() {
+        return ParseProfile.FULL;
+    }
+
+    /**
+     * Indique, d'après une pré-analyse lexicale, si le fichier peut contribuer aux
+     * résultats de la passe. Un fichier qu'aucune passe n'accepte n'est pas parsé ;
+     * les passes qui ne l'acceptent pas ne le reçoivent pas.
+     *
+     * @param scan La pré-analyse du fichier.
+     * @return Vrai si la passe doit analyser le fichier (par défaut, toujours).
+     */
+    default boolean accepts(SourceScan scan) {
+        return true;
+    }
+
+    /**
+     * Réduit une CompilationUnit en un résultat compact. Cette méthode peut être
+     * appelée simultanément depuis plusieurs threads et ne doit donc pas modifier
+     * l'état de la passe.
+     *
+     * @param unit La CompilationUnit à analyser.
+     * @return Le résultat de la passe pour ce fichier.
+     */
+    R analyze(CompilationUnit unit);
+
+    /**
+     * Accumule le résultat d'un fichier. Les appels sont sérialisés par le pipeline ;
+     * les fichiers refusés par {@link #accepts(SourceScan)} ne sont pas transmis.
+     *
+     * @param result Le résultat produit par {@link #analyze(CompilationUnit)}.
+     */
+    void collect(R result);
+
+    /**
+     * Écrit les résultats accumulés dans le rapport une fois tous les fichiers analysés.
+     *
+     * @param sourceRoot La racine du projet analysé.
+     * @param sink       Le rapport dans lequel écrire.
+     */
+    void report(Path sourceRoot, ReportSink sink);
+
+    /**
+     * Écrit ce qui a changé dans les résultats d'un fichier modifié, en mode
+     * surveillance. Par défaut, rien n'est écrit.
+     *
+     * @param file    Le chemin du fichier relatif à la racine du projet.
+     * @param before  Le résultat précédent, ou null si le fichier est nouveau, n'était pas
+     *                accepté ou si son résultat a été oublié par le cache.
+     * @param after   Le nouveau résultat, ou null si le fichier a été supprimé ou n'est pas accepté.
+     * @param evicted Vrai si le fichier était déjà connu mais que son résultat précédent a
+     *                été oublié par le cache : ses éléments sont alors modifiés, pas ajoutés.
+     * @param sink    Le rapport dans lequel écrire.
+     */
+    default void reportChange(String file, R before, R after, boolean evicted, ReportSink sink) {
+    }
+}
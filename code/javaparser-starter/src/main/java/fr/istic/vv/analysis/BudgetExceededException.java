@@ -0,0 +1,14 @@
+package fr.istic.vv.analysis;
+
+/**
+ * Levée par {@link FileBudget#checkpoint()} quand l'analyse d'un fichier dépasse son
+ * budget de temps. Le pipeline l'intercepte, abandonne le fichier et le signale dans
+ * le résumé de l'analyse.
+ */
+public class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExceededException(String message) {
+        super(message, null, false, false);
+    }
+}
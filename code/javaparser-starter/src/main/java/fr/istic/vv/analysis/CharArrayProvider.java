@@ -0,0 +1,36 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.Provider;
+
+/**
+ * Fournit au parser les caractères d'un tableau, sans passer par une chaîne. Le
+ * parser les demande par blocs au fil de son avancement : chaque lecture est aussi
+ * un point de contrôle du {@link FileBudget budget} du fichier.
+ */
+public final class CharArrayProvider implements Provider {
+
+    private final char[] chars;
+    private final int length;
+    private int position;
+
+    public CharArrayProvider(char[] chars, int length) {
+        this.chars = chars;
+        this.length = length;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int len) {
+        if (position >= length) {
+            return -1;
+        }
+        FileBudget.checkpoint();
+        int count = Math.min(len, length - position);
+        System.arraycopy(chars, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+    }
+}
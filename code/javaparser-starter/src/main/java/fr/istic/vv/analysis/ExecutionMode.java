@@ -0,0 +1,83 @@
+package fr.istic.vv.analysis;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Les façons d'exécuter l'analyse des fichiers d'un projet.
+ */
+public enum ExecutionMode {
+    /**
+     * Un ForkJoinPool découpe la liste des fichiers et ses threads se volent le
+     * travail restant ; il y a au plus un AST en mémoire par thread.
+     */
+    FORK_JOIN("fork-join"),
+    /**
+     * Chaque fichier est une tâche sur son propre thread virtuel, de la lecture à la
+     * publication de ses résultats ; un sémaphore borne le nombre de fichiers en cours,
+     * donc d'AST en mémoire. Les attentes d'entrées-sorties, longues sur un disque
+     * réseau, ne bloquent plus un thread du pool. Sans threads virtuels (avant Java 21),
+     * les tâches s'exécutent sur autant de threads classiques que de fichiers autorisés.
+     */
+    VIRTUAL_THREADS("virtual");
+
+    private static final Method NEW_VIRTUAL_EXECUTOR = virtualExecutorFactory();
+
+    private final String label;
+
+    ExecutionMode(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return Le mode correspondant à un nom ({@code fork-join} ou {@code virtual}),
+     *         sans tenir compte de la casse.
+     */
+    public static ExecutionMode parse(String name) {
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name) || mode.label.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown execution mode: " + name);
+    }
+
+    /**
+     * @return Vrai si le runtime fournit des threads virtuels.
+     */
+    public static boolean hasVirtualThreads() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * Crée l'exécuteur des tâches par fichier : un thread virtuel par tâche si le
+     * runtime le permet, sinon un pool de threads classiques de la taille donnée.
+     * L'API des threads virtuels est appelée par réflexion pour que l'outil reste
+     * compilable et exécutable avec un JDK 17.
+     *
+     * @param platformThreads Le nombre de threads classiques à défaut de threads virtuels.
+     */
+    static ExecutorService newTaskExecutor(int platformThreads) {
+        if (NEW_VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create a virtual thread executor", e);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads);
+    }
+
+    private static Method virtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fr.istic.vv.analysis;
+
+/**
+ * L'échéance de l'analyse du fichier en cours sur le thread courant, en mode protégé.
+ * Le pipeline l'ouvre avant de lire un fichier et la ferme après l'avoir analysé ;
+ * entre les deux, les traitements dont la durée dépend de la taille du fichier
+ * (lecture des caractères par le parser, parcours d'AST, comparaisons de paires)
+ * appellent régulièrement {@link #checkpoint()}, qui abandonne l'analyse une fois
+ * l'échéance passée. Hors mode protégé, aucune échéance n'est ouverte et un point de
+ * contrôle ne coûte qu'une lecture de ThreadLocal.
+ */
+public final class FileBudget {
+
+    /**
+     * Nombre d'unités de travail entre deux vérifications de l'échéance, une puissance de 2.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * Par thread : le début de l'analyse, l'échéance et 1 si elle est ouverte.
+     */
+    private static final ThreadLocal<long[]> DEADLINE = new ThreadLocal<>();
+
+    private FileBudget() {
+    }
+
+    /**
+     * Ouvre l'échéance de l'analyse d'un fichier sur le thread courant.
+     *
+     * @param nanos Le temps accordé au fichier.
+     */
+    static void open(long nanos) {
+        long[] deadline = DEADLINE.get();
+        if (deadline == null) {
+            deadline = new long[3];
+            DEADLINE.set(deadline);
+        }
+        deadline[0] = System.nanoTime();
+        deadline[1] = deadline[0] + nanos;
+        deadline[2] = 1;
+    }
+
+    static void close() {
+        long[] deadline = DEADLINE.get();
+        if (deadline != null) {
+            deadline[2] = 0;
+        }
+    }
+
+    /**
+     * Abandonne l'analyse du fichier courant si son échéance est passée.
+     *
+     * @throws BudgetExceededException Si le budget du fichier est épuisé.
+     */
+    public static void checkpoint() {
+        long[] deadline = DEADLINE.get();
+        if (deadline != null && deadline[2] != 0) {
+            long now = System.nanoTime();
+            if (now - deadline[1] > 0) {
+                throw new BudgetExceededException("time budget exceeded after "
+                        + (now - deadline[0]) / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    /**
+     * Point de contrôle pour une boucle : l'échéance n'est vérifiée qu'une fois toutes
+     * les {@value #CHECK_INTERVAL} unités de travail.
+     *
+     * @param work Le nombre d'unités de travail effectuées jusqu'ici.
+     */
+    public static void checkpoint(int work) {
+        if ((work & (CHECK_INTERVAL - 1)) == 0) {
+            checkpoint();
+        }
+    }
+}
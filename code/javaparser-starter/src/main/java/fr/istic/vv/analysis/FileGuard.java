@@ -0,0 +1,140 @@
+package fr.istic.vv.analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Les fichiers écartés d'une analyse : un fichier qui épuise la pile est toujours
+ * abandonné et, en mode protégé, un fichier en quarantaine ou plus gros que la taille
+ * maximale n'est pas lu et un fichier qui épuise son budget de temps est abandonné.
+ * Les fichiers abandonnés pour le temps ou la pile rejoignent la quarantaine,
+ * enregistrée à la fin de l'analyse, pour que les analyses suivantes ne les lisent
+ * même plus. Pour réessayer un fichier, il suffit de retirer sa ligne de la quarantaine.
+ */
+final class FileGuard {
+
+    /**
+     * Un fichier écarté de l'analyse.
+     */
+    static final class SkippedFile {
+        final String file;
+        final String reason;
+        final long nanos;
+
+        SkippedFile(String file, String reason, long nanos) {
+            this.file = file;
+            this.reason = reason;
+            this.nanos = nanos;
+        }
+    }
+
+    private final long fileNanos;
+    private final long maxFileBytes;
+    private final Path quarantineFile;
+    private final Set<String> quarantined = ConcurrentHashMap.newKeySet();
+    private final Set<String> quarantinedNow = ConcurrentHashMap.newKeySet();
+    private final List<SkippedFile> skipped = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param fileNanos      Le temps accordé à chaque fichier, ou 0 sans limite.
+     * @param maxFileBytes   La taille maximale d'un fichier, ou 0 sans limite.
+     * @param quarantineFile La liste des fichiers en quarantaine, un chemin relatif par
+     *                       ligne, ou null pour ne pas en tenir.
+     */
+    FileGuard(long fileNanos, long maxFileBytes, Path quarantineFile) {
+        this.fileNanos = fileNanos;
+        this.maxFileBytes = maxFileBytes;
+        this.quarantineFile = quarantineFile;
+        if (quarantineFile != null && Files.isRegularFile(quarantineFile)) {
+            try {
+                for (String line : Files.readAllLines(quarantineFile, StandardCharsets.UTF_8)) {
+                    String key = line.trim();
+                    if (!key.isEmpty() && !key.startsWith("#")) {
+                        quarantined.add(key);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable quarantine list " + quarantineFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    long getFileNanos() {
+        return fileNanos;
+    }
+
+    /**
+     * Indique si un fichier peut être lu.
+     *
+     * @param key  Le chemin du fichier relatif à la racine du projet.
+     * @param file Le fichier.
+     * @return La raison pour laquelle le fichier est écarté, ou null s'il peut être lu.
+     */
+    String admit(String key, Path file) throws IOException {
+        if (quarantined.contains(key)) {
+            return "quarantined";
+        }
+        if (maxFileBytes > 0) {
+            long size = Files.size(file);
+            if (size > maxFileBytes) {
+                return "size budget exceeded (" + size + " bytes)";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Enregistre un fichier écarté, et le met en quarantaine si demandé.
+     */
+    void skip(String key, String reason, long nanos, boolean quarantine) {
+        skipped.add(new SkippedFile(key, reason, nanos));
+        if (quarantine && quarantineFile != null) {
+            quarantinedNow.add(key);
+        }
+    }
+
+    /**
+     * @return Les fichiers écartés depuis l'appel précédent, triés par chemin. Ils
+     *         sont retirés de la liste, qui ne grandit pas pendant la surveillance.
+     */
+    List<SkippedFile> drainSkippedFiles() {
+        List<SkippedFile> sorted;
+        synchronized (skipped) {
+            sorted = new ArrayList<>(skipped);
+            skipped.clear();
+        }
+        sorted.sort(Comparator.comparing(skippedFile -> skippedFile.file));
+        return sorted;
+    }
+
+    /**
+     * Ajoute à la liste de quarantaine les fichiers abandonnés depuis le dernier
+     * enregistrement ; ne réécrit rien si aucun fichier n'a été abandonné.
+     */
+    void saveQuarantine() throws IOException {
+        if (quarantineFile == null || quarantinedNow.isEmpty()) {
+            return;
+        }
+        Set<String> keys = new TreeSet<>(quarantined);
+        keys.addAll(quarantinedNow);
+        Path parent = quarantineFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, quarantineFile.getFileName().toString(), ".tmp");
+        Files.write(temp, keys, StandardCharsets.UTF_8);
+        Files.move(temp, quarantineFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        quarantined.addAll(keys);
+        quarantinedNow.clear();
+    }
+}
@@ -0,0 +1,60 @@
+package fr.istic.vv.analysis;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Émet chaque phase mesurée comme un événement JFR {@code fr.istic.vv.AnalysisPhase},
+ * visible dans un enregistrement lancé avec {@code -XX:StartFlightRecording}.
+ * <p>
+ * Cette classe n'est chargée que si les événements JFR sont demandés, par
+ * {@link RunMetrics} : le reste de l'outil ne dépend pas du module jdk.jfr.
+ */
+final class JfrPhaseListener implements PhaseListener {
+
+    @Name("fr.istic.vv.AnalysisPhase")
+    @Label("Analysis Phase")
+    @Category("Source Analysis")
+    @StackTrace(false)
+    static final class AnalysisPhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("File")
+        String file;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    private AnalysisPhaseEvent event;
+
+    @Override
+    public void begin() {
+        event = new AnalysisPhaseEvent();
+        event.begin();
+    }
+
+    @Override
+    public void end(String phase, String file, long allocated) {
+        AnalysisPhaseEvent ended = event;
+        event = null;
+        ended.end();
+        if (ended.shouldCommit()) {
+            ended.phase = phase;
+            ended.file = file;
+            ended.allocated = allocated;
+            ended.commit();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        event = null;
+    }
+}
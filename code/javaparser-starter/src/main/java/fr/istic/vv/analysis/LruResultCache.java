@@ -0,0 +1,72 @@
+package fr.istic.vv.analysis;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache en mémoire des résultats par fichier, borné en nombre d'entrées : au-delà,
+ * les fichiers utilisés le moins récemment sont oubliés et seront reparsés s'ils
+ * sont de nouveau demandés. Les chemins des fichiers analysés sont gardés à part, sans
+ * limite : un fichier oublié reste connu, et sa modification n'est pas prise pour un ajout.
+ */
+class LruResultCache implements ResultCache {
+
+    private static class Entry {
+        final byte[] hash;
+        final Object[] results;
+
+        Entry(byte[] hash, Object[] results) {
+            this.hash = hash;
+            this.results = results;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private final Set<String> known = new HashSet<>();
+
+    LruResultCache(int capacity) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Object[] lookup(String key, byte[] hash) {
+        Entry entry = entries.get(key);
+        return entry != null && Arrays.equals(entry.hash, hash) ? entry.results : null;
+    }
+
+    @Override
+    public synchronized void store(String key, byte[] hash, Object[] results) {
+        entries.put(key, new Entry(hash, results));
+        known.add(key);
+    }
+
+    /**
+     * @return Vrai si le fichier a été analysé et n'a pas été supprimé depuis, que son
+     *         résultat soit encore en mémoire ou non.
+     */
+    synchronized boolean isKnown(String key) {
+        return known.contains(key);
+    }
+
+    /**
+     * @return Les derniers résultats connus du fichier, quel que soit son contenu actuel.
+     */
+    synchronized Object[] get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.results;
+    }
+
+    synchronized Object[] remove(String key) {
+        known.remove(key);
+        Entry entry = entries.remove(key);
+        return entry == null ? null : entry.results;
+    }
+}
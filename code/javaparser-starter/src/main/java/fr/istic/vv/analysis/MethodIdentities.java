@@ -0,0 +1,340 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.TypeParameter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * L'identité de chaque méthode d'une CompilationUnit, calculée en un seul parcours :
+ * <ul>
+ * <li>le type propriétaire, par son nom qualifié ({@code p.Outer.Inner}). Comme pour
+ * javac, les classes anonymes et les constantes d'énumération avec un corps sont
+ * numérotées dans leur type englobant ({@code p.Outer$1}) et les classes locales
+ * préfixées de leur numéro ({@code p.Outer$1Local}) ;</li>
+ * <li>le nom de la méthode et l'effacement de ses types de paramètres : sans
+ * arguments de type, une variable de type remplacée par l'effacement de sa première
+ * borne ({@code Object} sans borne), un varargs écrit comme un tableau. Les noms de
+ * types sont ceux du source, sans résolution des imports ;</li>
+ * <li>l'index de surcharge : le rang de la méthode parmi celles de même nom dans
+ * son propriétaire. Il n'apparaît dans la signature ({@code #1}) que si deux
+ * méthodes ont le même effacement, ce qui n'arrive que dans un source invalide.</li>
+ * </ul>
+ */
+public final class MethodIdentities {
+
+    private final Map<MethodDeclaration, Identity> identities = new IdentityHashMap<>();
+
+    private MethodIdentities() {
+    }
+
+    /**
+     * Calcule l'identité de toutes les méthodes d'un fichier.
+     *
+     * @param unit La CompilationUnit.
+     * @return Les identités, indexées par méthode.
+     */
+    public static MethodIdentities of(CompilationUnit unit) {
+        MethodIdentities result = new MethodIdentities();
+        String packageName = unit.getPackageDeclaration().map(declaration -> declaration.getNameAsString()).orElse("");
+        new OwnerWalker(result.identities, packageName).walk(unit);
+        return result;
+    }
+
+    /**
+     * @return La signature de la méthode, par exemple {@code p.Outer$1.run(int, List[])}.
+     */
+    public String signature(MethodDeclaration method) {
+        return identity(method).signature;
+    }
+
+    /**
+     * @return Le nom qualifié du type qui déclare la méthode.
+     */
+    public String owner(MethodDeclaration method) {
+        return identity(method).owner;
+    }
+
+    /**
+     * @return Le rang de la méthode parmi celles de même nom de son propriétaire, à partir de 0.
+     */
+    public int overloadIndex(MethodDeclaration method) {
+        return identity(method).overload;
+    }
+
+    private Identity identity(MethodDeclaration method) {
+        Identity identity = identities.get(method);
+        if (identity == null) {
+            throw new IllegalArgumentException("Method not declared in this unit: " + method.getNameAsString());
+        }
+        return identity;
+    }
+
+    private static final class Identity {
+        final String owner;
+        final String signature;
+        final int overload;
+
+        Identity(String owner, String signature, int overload) {
+            this.owner = owner;
+            this.signature = signature;
+            this.overload = overload;
+        }
+    }
+
+    /**
+     * Le corps d'une classe anonyme, en attente dans la pile du parcours.
+     */
+    private static final class AnonymousBody {
+        final NodeList<BodyDeclaration<?>> members;
+
+        AnonymousBody(NodeList<BodyDeclaration<?>> members) {
+            this.members = members;
+        }
+    }
+
+    /**
+     * Un type en cours de parcours, ou une méthode générique.
+     */
+    private static final class Scope {
+        final String owner;
+        final Map<String, String> typeVariables;
+        final Map<String, int[]> overloads = new HashMap<>();
+
+        Scope(String owner, Map<String, String> typeVariables) {
+            this.owner = owner;
+            this.typeVariables = typeVariables;
+        }
+    }
+
+    /**
+     * Suit le type propriétaire et les variables de type visibles au fil du parcours.
+     * Le parcours utilise une pile explicite, sans récursion, pour qu'une expression
+     * profondément imbriquée ne puisse pas épuiser la pile du thread. Les nœuds de type
+     * ne contiennent jamais de méthode et ne sont pas parcourus.
+     */
+    private static final class OwnerWalker {
+        /**
+         * Marque, dans la pile du parcours, la sortie d'un type ou d'une méthode.
+         */
+        private static final Object LEAVE = new Object();
+
+        private final Map<MethodDeclaration, Identity> identities;
+        private final String packageName;
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+        private final Set<String> usedNames = new HashSet<>();
+        private final StringBuilder builder = new StringBuilder(64);
+        private final Deque<Object> pending = new ArrayDeque<>();
+
+        OwnerWalker(Map<MethodDeclaration, Identity> identities, String packageName) {
+            this.identities = identities;
+            this.packageName = packageName;
+        }
+
+        void walk(Node root) {
+            pending.push(root);
+            int visited = 0;
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next == LEAVE) {
+                    scopes.pop();
+                } else if (next instanceof AnonymousBody) {
+                    enter(localName(""), null);
+                    pending.push(LEAVE);
+                    pushAll(((AnonymousBody) next).members);
+                } else {
+                    FileBudget.checkpoint(++visited);
+                    visit((Node) next);
+                }
+            }
+        }
+
+        private void visit(Node node) {
+            if (node instanceof ClassOrInterfaceDeclaration) {
+                ClassOrInterfaceDeclaration type = (ClassOrInterfaceDeclaration) node;
+                enterScope(typeName(type), type.getTypeParameters());
+                pushAll(type.getMembers());
+            } else if (node instanceof EnumDeclaration) {
+                EnumDeclaration type = (EnumDeclaration) node;
+                enterScope(typeName(type), null);
+                pushAll(type.getMembers());
+                pushAll(type.getEntries());
+            } else if (node instanceof AnnotationDeclaration) {
+                AnnotationDeclaration type = (AnnotationDeclaration) node;
+                enterScope(typeName(type), null);
+                pushAll(type.getMembers());
+            } else if (node instanceof EnumConstantDeclaration) {
+                EnumConstantDeclaration constant = (EnumConstantDeclaration) node;
+                pushAnonymous(constant.getClassBody());
+                pushAll(constant.getArguments());
+            } else if (node instanceof ObjectCreationExpr) {
+                ObjectCreationExpr creation = (ObjectCreationExpr) node;
+                pushAnonymous(creation.getAnonymousClassBody().orElse(null));
+                pushAll(creation.getArguments());
+                creation.getScope().ifPresent(pending::push);
+            } else if (node instanceof ConstructorDeclaration) {
+                ConstructorDeclaration constructor = (ConstructorDeclaration) node;
+                enterScope(scopes.peek().owner, constructor.getTypeParameters());
+                pending.push(constructor.getBody());
+            } else if (node instanceof MethodDeclaration) {
+                MethodDeclaration method = (MethodDeclaration) node;
+                Scope type = scopes.peek();
+                enterScope(type.owner, method.getTypeParameters());
+                identities.put(method, identify(type, method));
+                method.getBody().ifPresent(pending::push);
+            } else if (!(node instanceof Type)) {
+                pushAll(node.getChildNodes());
+            }
+        }
+
+        /**
+         * Entre dans un type ou une méthode ; sa sortie est empilée avant ses membres.
+         */
+        private void enterScope(String owner, NodeList<TypeParameter> typeParameters) {
+            enter(owner, typeParameters);
+            pending.push(LEAVE);
+        }
+
+        /**
+         * Empile des nœuds pour qu'ils soient visités dans leur ordre.
+         */
+        private void pushAll(List<? extends Node> nodes) {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                pending.push(nodes.get(i));
+            }
+        }
+
+        private void pushAnonymous(NodeList<BodyDeclaration<?>> body) {
+            if (body != null && body.isNonEmpty()) {
+                pending.push(new AnonymousBody(body));
+            }
+        }
+
+        private void enter(String owner, NodeList<TypeParameter> typeParameters) {
+            Map<String, String> typeVariables = Collections.emptyMap();
+            if (typeParameters != null && typeParameters.isNonEmpty()) {
+                typeVariables = new HashMap<>();
+                for (TypeParameter parameter : typeParameters) {
+                    StringBuilder erasure = new StringBuilder();
+                    if (parameter.getTypeBound().isEmpty()) {
+                        erasure.append("Object");
+                    } else {
+                        appendErasure(erasure, parameter.getTypeBound().get(0));
+                    }
+                    typeVariables.put(parameter.getNameAsString(), erasure.toString());
+                }
+            }
+            scopes.push(new Scope(owner, typeVariables));
+        }
+
+        /**
+         * @return Le nom qualifié d'un type membre ou de premier niveau, ou le nom
+         *         numéroté d'une classe locale.
+         */
+        private String typeName(TypeDeclaration<?> type) {
+            Node parent = type.getParentNode().orElse(null);
+            if (parent instanceof LocalClassDeclarationStmt) {
+                return localName(type.getNameAsString());
+            }
+            String enclosing = scopes.isEmpty() ? packageName : scopes.peek().owner;
+            String name = enclosing.isEmpty() ? type.getNameAsString() : enclosing + "." + type.getNameAsString();
+            usedNames.add(name);
+            return name;
+        }
+
+        /**
+         * @return Le premier nom {@code englobant$<n><nom>} libre, comme javac.
+         */
+        private String localName(String simpleName) {
+            String enclosing = scopes.peek().owner;
+            for (int index = 1; ; index++) {
+                String name = enclosing + "$" + index + simpleName;
+                if (usedNames.add(name)) {
+                    return name;
+                }
+            }
+        }
+
+        private Identity identify(Scope type, MethodDeclaration method) {
+            String name = method.getNameAsString();
+            int overload = type.overloads.computeIfAbsent(name, key -> new int[1])[0]++;
+            builder.setLength(0);
+            builder.append(type.owner).append('.').append(name).append('(');
+            boolean first = true;
+            for (Parameter parameter : method.getParameters()) {
+                if (!first) {
+                    builder.append(", ");
+                }
+                first = false;
+                appendErasure(builder, parameter.getType());
+                if (parameter.isVarArgs()) {
+                    builder.append("[]");
+                }
+            }
+            builder.append(')');
+            String signature = builder.toString();
+            if (!usedNames.add(signature)) {
+                signature = signature + "#" + overload;
+            }
+            return new Identity(type.owner, signature, overload);
+        }
+
+        private void appendErasure(StringBuilder out, Type type) {
+            if (type instanceof ArrayType) {
+                appendErasure(out, ((ArrayType) type).getComponentType());
+                out.append("[]");
+            } else if (type instanceof ClassOrInterfaceType) {
+                ClassOrInterfaceType classType = (ClassOrInterfaceType) type;
+                String variable = classType.getScope().isPresent() ? null : typeVariable(classType.getNameAsString());
+                if (variable != null) {
+                    out.append(variable);
+                    return;
+                }
+                classType.getScope().ifPresent(scope -> {
+                    appendErasure(out, scope);
+                    out.append('.');
+                });
+                out.append(classType.getNameAsString());
+            } else {
+                out.append(type.asString());
+            }
+        }
+
+        /**
+         * @return L'effacement de la variable de type visible la plus proche, ou null.
+         */
+        private String typeVariable(String name) {
+            for (Scope scope : scopes) {
+                String erasure = scope.typeVariables.get(name);
+                if (erasure != null) {
+                    return erasure;
+                }
+            }
+            return null;
+        }
+    }
+}
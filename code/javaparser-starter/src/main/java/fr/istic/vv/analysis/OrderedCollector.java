@@ -0,0 +1,107 @@
+package fr.istic.vv.analysis;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fusionne les résultats des fichiers analysés en parallèle dans l'ordre des fichiers,
+ * pour que les passes reçoivent exactement la même séquence qu'en mono-thread.
+ * <p>
+ * Chaque tâche dépose ses résultats dans la case de son fichier, sans verrou. Le
+ * thread qui obtient le droit de vider les cases transmet aux passes tous les
+ * fichiers consécutifs déjà terminés puis libère leurs cases ; les autres threads
+ * retournent immédiatement à leur travail.
+ */
+class OrderedCollector {
+
+    private static final Object[] SKIPPED = new Object[0];
+
+    private final List<Analyzer<?>> analyzers;
+    private final AtomicReferenceArray<Object[]> slots;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final RunMetrics metrics;
+    private volatile int next;
+    private int failedFiles;
+
+    /**
+     * @param metrics Les mesures de l'analyse, ou null si elle n'est pas instrumentée.
+     */
+    OrderedCollector(List<Analyzer<?>> analyzers, int files, RunMetrics metrics) {
+        this.analyzers = analyzers;
+        this.slots = new AtomicReferenceArray<>(files);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Dépose les résultats d'un fichier.
+     *
+     * @param index   L'index du fichier dans l'ordre de découverte.
+     * @param results Les résultats de chaque passe, ou null si le fichier n'a pas pu être analysé.
+     */
+    void publish(int index, Object[] results) {
+        slots.set(index, results == null ? SKIPPED : results);
+        drain();
+    }
+
+    private void drain() {
+        while (draining.compareAndSet(false, true)) {
+            try {
+                int cursor = next;
+                Object[] results;
+                while (cursor < slots.length() && (results = slots.get(cursor)) != null) {
+                    slots.set(cursor, null);
+                    cursor++;
+                    if (results == SKIPPED) {
+                        failedFiles++;
+                    } else {
+                        collectAll(results);
+                    }
+                }
+                next = cursor;
+            } finally {
+                draining.set(false);
+            }
+            // Un résultat a pu être déposé entre la fin du parcours et la libération du droit
+            int cursor = next;
+            if (cursor >= slots.length() || slots.get(cursor) == null) {
+                return;
+            }
+        }
+    }
+
+    private void collectAll(Object[] results) {
+        RunMetrics.Recorder recorder = metrics == null ? null : metrics.recorder();
+        if (recorder != null) {
+            recorder.begin();
+        }
+        for (int i = 0; i < results.length; i++) {
+            // Un résultat null : la passe n'a pas accepté le fichier
+            if (results[i] != null) {
+                collect(analyzers.get(i), results[i]);
+                if (recorder != null) {
+                    recorder.lap(RunMetrics.Phase.COLLECT, i);
+                }
+            }
+        }
+        if (recorder != null) {
+            recorder.end();
+        }
+    }
+
+    boolean isComplete() {
+        return next == slots.length();
+    }
+
+    /**
+     * @return Le nombre de fichiers qui n'ont pas pu être analysés. À lire une fois la collecte terminée.
+     */
+    int getFailedFiles() {
+        return failedFiles;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void collect(Analyzer<R> analyzer, Object result) {
+        analyzer.collect((R) result);
+    }
+}
@@ -0,0 +1,71 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.JavaParser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ce dont l'analyse d'un fichier a besoin pour le lire et le parser : un
+ * {@link SourceReader} et un parser par profil. Ces objets coûtent cher à créer et
+ * ne sont pas thread-safe ; ils sont empruntés à une réserve commune le temps d'un
+ * fichier puis rendus. La réserve ne dépend pas des threads : un thread virtuel par
+ * fichier réutilise les mêmes contextes qu'un thread du ForkJoinPool.
+ * <p>
+ * La réserve garde au plus {@link #MAX_IDLE} contextes ; au-delà, un contexte rendu
+ * est abandonné au ramasse-miettes. Un contexte rendu perd aussi les tampons agrandis
+ * par un gros fichier ({@link SourceReader#trim()}) : après un pic de fichiers
+ * simultanés ou un fichier énorme, la mémoire retenue redescend.
+ */
+final class ParseContext {
+
+    /**
+     * Le nombre maximal de contextes au repos : le nombre de fichiers analysés
+     * simultanément par défaut en mode threads virtuels (4 par cœur).
+     */
+    static final int MAX_IDLE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static final Queue<ParseContext> IDLE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger IDLE_COUNT = new AtomicInteger();
+
+    private final SourceReader reader = new SourceReader();
+    private final JavaParser[] parsers = new JavaParser[ParseProfile.values().length];
+
+    private ParseContext() {
+    }
+
+    /**
+     * @return Un contexte inutilisé, à rendre avec {@link #release()}.
+     */
+    static ParseContext acquire() {
+        ParseContext context = IDLE.poll();
+        if (context == null) {
+            return new ParseContext();
+        }
+        IDLE_COUNT.decrementAndGet();
+        return context;
+    }
+
+    void release() {
+        reader.trim();
+        if (IDLE_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE.offer(this);
+        } else {
+            IDLE_COUNT.decrementAndGet();
+        }
+    }
+
+    SourceReader reader() {
+        return reader;
+    }
+
+    JavaParser parser(ParseProfile profile) {
+        JavaParser parser = parsers[profile.ordinal()];
+        if (parser == null) {
+            parser = profile.newParser();
+            parsers[profile.ordinal()] = parser;
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+
+/**
+ * Ce qu'une passe attend de l'AST, du moins coûteux au plus complet. Le pipeline
+ * parse chaque fichier avec le profil le plus complet demandé par les passes
+ * intéressées par ce fichier.
+ * <p>
+ * Les positions (lignes, colonnes) sont toujours disponibles car les rapports les
+ * utilisent : JavaParser les déduit des tokens, qui sont donc toujours conservés.
+ */
+public enum ParseProfile {
+
+    /**
+     * Déclarations seulement : le contenu des corps de méthodes, de constructeurs et
+     * d'initialiseurs de classes anonymes est remplacé par des espaces avant le
+     * parsing (les sauts de ligne sont conservés, donc les positions aussi). Les
+     * commentaires ne sont pas rattachés aux nœuds.
+     */
+    SIGNATURES(false),
+
+    /**
+     * AST complet, sans rattachement des commentaires aux nœuds.
+     */
+    BODIES(false),
+
+    /**
+     * AST complet avec la configuration par défaut de JavaParser : commentaires
+     * rattachés aux nœuds.
+     */
+    FULL(true);
+
+    private final boolean comments;
+
+    ParseProfile(boolean comments) {
+        this.comments = comments;
+    }
+
+    /**
+     * @return Un nouveau parser configuré pour ce profil. Un JavaParser n'est pas
+     *         thread-safe : chaque {@link ParseContext} a le sien.
+     */
+    JavaParser newParser() {
+        return new JavaParser(comments
+                ? new ParserConfiguration()
+                : new ParserConfiguration().setAttributeComments(false));
+    }
+
+    /**
+     * Prépare sur place le source à donner au parser.
+     */
+    void prepare(char[] source, int length) {
+        if (this == SIGNATURES) {
+            SourceScan.stripBodies(source, length);
+        }
+    }
+
+    /**
+     * @return Le plus complet des deux profils.
+     */
+    ParseProfile max(ParseProfile other) {
+        return other == null || compareTo(other) >= 0 ? this : other;
+    }
+}
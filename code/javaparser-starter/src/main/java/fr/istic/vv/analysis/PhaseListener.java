@@ -0,0 +1,27 @@
+package fr.istic.vv.analysis;
+
+/**
+ * Reçoit les phases mesurées par un {@link RunMetrics.Recorder}, au moment où elles
+ * se produisent. Une instance n'est utilisée que par un seul thread.
+ */
+interface PhaseListener {
+
+    /**
+     * Une nouvelle phase commence.
+     */
+    void begin();
+
+    /**
+     * La phase commencée se termine.
+     *
+     * @param phase     Le nom de la phase, suivi de celui de la passe s'il y a lieu.
+     * @param file      Le fichier concerné, ou null.
+     * @param allocated Les octets alloués par le thread pendant la phase.
+     */
+    void end(String phase, String file, long allocated);
+
+    /**
+     * La phase commencée n'aura pas lieu.
+     */
+    void cancel();
+}
@@ -0,0 +1,22 @@
+package fr.istic.vv.analysis;
+
+/**
+ * Mémorise les résultats par fichier pour éviter de reparser les fichiers inchangés.
+ * Une entrée est indexée par le chemin relatif du fichier et n'est valable que pour
+ * l'empreinte du contenu qui l'a produite. Les implémentations doivent être
+ * thread-safe : le pipeline les interroge depuis tous ses threads.
+ */
+public interface ResultCache {
+
+    /**
+     * @param key  Le chemin relatif du fichier.
+     * @param hash L'empreinte du contenu actuel.
+     * @return Les résultats de chaque passe, ou null si le fichier doit être réanalysé.
+     */
+    Object[] lookup(String key, byte[] hash);
+
+    /**
+     * Enregistre les résultats d'un fichier qui vient d'être analysé.
+     */
+    void store(String key, byte[] hash, Object[] results);
+}
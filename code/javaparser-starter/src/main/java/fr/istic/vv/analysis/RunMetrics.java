@@ -0,0 +1,400 @@
+package fr.istic.vv.analysis;
+
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.QuantileSketch;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Mesures d'une analyse : temps et mémoire allouée par phase et par passe, latence
+ * de parsing par fichier, octets lus et erreurs de parsing.
+ * <p>
+ * Chaque fichier est mesuré par un {@link Recorder} emprunté le temps du fichier,
+ * sans synchronisation ; les enregistreurs ne sont fusionnés qu'au moment du résumé,
+ * une fois l'analyse terminée. Il y en a autant que de fichiers mesurés simultanément,
+ * que ceux-ci soient traités par des threads du ForkJoinPool ou par des threads
+ * virtuels. Sans instrumentation, le pipeline n'en crée aucun.
+ */
+public final class RunMetrics {
+
+    /**
+     * Les phases mesurées, dans l'ordre où elles apparaissent dans le résumé.
+     */
+    public enum Phase {
+        DISCOVERY("discovery"),
+        READ("read"),
+        CACHE("cache"),
+        DECODE("decode"),
+        SCAN("scan"),
+        PARSE("parse"),
+        ANALYZE("analyze"),
+        COLLECT("collect"),
+        REPORT("report"),
+        WRITE("write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Nombre de fichiers les plus lents à parser listés dans le résumé.
+     */
+    static final int SLOWEST_FILES = 10;
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+    private static final Comparator<FileTiming> BY_DURATION =
+            Comparator.comparingLong((FileTiming timing) -> timing.nanos).thenComparing(timing -> timing.file);
+
+    private final List<String> analyzerNames = new ArrayList<>();
+    private final int threads;
+    private final String executor;
+    private final long started = System.nanoTime();
+    private final List<Recorder> recorders = Collections.synchronizedList(new ArrayList<>());
+    private final Queue<Recorder> idle = new ConcurrentLinkedQueue<>();
+    private final List<FileTiming> skipped = new ArrayList<>();
+    private final boolean jfrEvents;
+
+    RunMetrics(List<Analyzer<?>> analyzers, int threads, String executor, boolean jfrEvents) {
+        for (Analyzer<?> analyzer : analyzers) {
+            analyzerNames.add(analyzer.getName());
+        }
+        this.threads = threads;
+        this.executor = executor;
+        this.jfrEvents = jfrEvents;
+    }
+
+    /**
+     * @return Un enregistreur inutilisé, rendu par {@link Recorder#end()}.
+     */
+    Recorder recorder() {
+        Recorder recorder = idle.poll();
+        if (recorder == null) {
+            recorder = new Recorder(jfrEvents ? newJfrListener() : null);
+            recorders.add(recorder);
+        }
+        return recorder;
+    }
+
+    /**
+     * Enregistre un fichier écarté de l'analyse, une fois l'analyse terminée.
+     *
+     * @param file   Le chemin du fichier relatif à la racine du projet.
+     * @param reason La raison de son abandon.
+     * @param nanos  Le temps passé sur le fichier avant son abandon.
+     */
+    void skipped(String file, String reason, long nanos) {
+        skipped.add(new FileTiming(file, nanos, 0, reason));
+    }
+
+    /**
+     * Indique si les événements JFR peuvent être émis : le module jdk.jfr est
+     * absent de certains JRE, et la classe qui l'utilise n'est chargée qu'ici.
+     */
+    static boolean isJfrAvailable() {
+        return newJfrListener() != null;
+    }
+
+    private static PhaseListener newJfrListener() {
+        try {
+            return Class.forName("fr.istic.vv.analysis.JfrPhaseListener")
+                    .asSubclass(PhaseListener.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+        if (!allocations.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return allocations;
+    }
+
+    /**
+     * @return Les octets alloués par le thread courant. Ils ne sont pas suivis sur
+     *         un thread virtuel, pour lequel la mesure vaut 0.
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATIONS == null) {
+            return 0;
+        }
+        return Math.max(0, ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    /**
+     * @return Le pic de mémoire résidente du processus (VmHWM), ou -1 hors de Linux.
+     */
+    static long peakResidentBytes() {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.ISO_8859_1)) {
+                if (line.startsWith("VmHWM:")) {
+                    String kilobytes = line.substring("VmHWM:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Le nom d'une mesure : la phase, suivie du nom de la passe pour les
+     *         phases propres à une passe.
+     */
+    private String slotName(int slot) {
+        Phase phase = Phase.values()[slot / (analyzerNames.size() + 1)];
+        int analyzer = slot % (analyzerNames.size() + 1) - 1;
+        return analyzer < 0 ? phase.getLabel() : phase.getLabel() + ":" + analyzerNames.get(analyzer);
+    }
+
+    /**
+     * Écrit le résumé de l'analyse : un enregistrement {@code runSummary}, un
+     * {@code phase} par phase mesurée, la distribution des latences de parsing, les
+     * fichiers les plus lents, chaque erreur de parsing et chaque fichier écarté.
+     *
+     * @param root Le sujet du résumé, la racine du projet.
+     * @param sink Le rapport dans lequel écrire.
+     */
+    public void report(String root, ReportSink sink) {
+        int slots = Phase.values().length * (analyzerNames.size() + 1);
+        long[] nanos = new long[slots];
+        long[] calls = new long[slots];
+        long[] allocated = new long[slots];
+        QuantileSketch parseLatency = new QuantileSketch();
+        PriorityQueue<FileTiming> slowest = new PriorityQueue<>(BY_DURATION);
+        List<FileTiming> parseErrors = new ArrayList<>();
+        long files = 0;
+        long bytesRead = 0;
+        long cached = 0;
+        long parsed = 0;
+        long notParsed = 0;
+        synchronized (recorders) {
+            for (Recorder recorder : recorders) {
+                for (int i = 0; i < slots; i++) {
+                    nanos[i] += recorder.nanos[i];
+                    calls[i] += recorder.calls[i];
+                    allocated[i] += recorder.allocated[i];
+                }
+                parseLatency.merge(recorder.parseLatency);
+                for (FileTiming timing : recorder.slowest) {
+                    keepSlowest(slowest, timing);
+                }
+                parseErrors.addAll(recorder.parseErrors);
+                files += recorder.files;
+                bytesRead += recorder.bytesRead;
+                cached += recorder.cached;
+                parsed += recorder.parsed;
+                notParsed += recorder.notParsed;
+            }
+        }
+
+        sink.aggregate("runSummary", root)
+                .field("executor", executor)
+                .field("threads", threads)
+                .field("files", files)
+                .field("bytesRead", bytesRead)
+                .field("cached", cached)
+                .field("parsed", parsed)
+                .field("notParsed", notParsed)
+                .field("parseErrors", parseErrors.size())
+                .field("skipped", skipped.size())
+                .field("wallMillis", (System.nanoTime() - started) / 1e6)
+                .field("allocationTracked", ALLOCATIONS != null ? "yes" : "no")
+                .field("peakRssBytes", peakResidentBytes())
+                .end();
+        for (int i = 0; i < slots; i++) {
+            if (calls[i] > 0) {
+                sink.aggregate("phase", slotName(i))
+                        .field("calls", calls[i])
+                        .field("millis", nanos[i] / 1e6)
+                        .field("allocatedBytes", allocated[i])
+                        .end();
+            }
+        }
+        if (parseLatency.count() > 0) {
+            sink.aggregate("parseLatency", root)
+                    .field("files", parseLatency.count())
+                    .field("p50Millis", parseLatency.quantile(0.5))
+                    .field("p90Millis", parseLatency.quantile(0.9))
+                    .field("p99Millis", parseLatency.quantile(0.99))
+                    .field("maxMillis", parseLatency.max())
+                    .end();
+        }
+        List<FileTiming> slowestFirst = new ArrayList<>(slowest);
+        slowestFirst.sort(BY_DURATION.reversed());
+        for (FileTiming timing : slowestFirst) {
+            sink.aggregate("slowFile", timing.file)
+                    .field("parseMillis", timing.nanos / 1e6)
+                    .field("bytes", timing.bytes)
+                    .end();
+        }
+        parseErrors.sort(Comparator.comparing(timing -> timing.file));
+        for (FileTiming error : parseErrors) {
+            sink.aggregate("parseError", error.file).field("message", error.message).end();
+        }
+        for (FileTiming file : skipped) {
+            sink.aggregate("skippedFile", file.file)
+                    .field("reason", file.message)
+                    .field("millis", file.nanos / 1e6)
+                    .end();
+        }
+    }
+
+    private static void keepSlowest(PriorityQueue<FileTiming> slowest, FileTiming timing) {
+        if (slowest.size() < SLOWEST_FILES) {
+            slowest.add(timing);
+        } else if (BY_DURATION.compare(timing, slowest.peek()) > 0) {
+            slowest.poll();
+            slowest.add(timing);
+        }
+    }
+
+    /**
+     * Le temps de parsing d'un fichier, ou son erreur de parsing.
+     */
+    private static final class FileTiming {
+        final String file;
+        final long nanos;
+        final long bytes;
+        final String message;
+
+        FileTiming(String file, long nanos, long bytes, String message) {
+            this.file = file;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Les mesures d'un fichier ou d'une étape de l'analyse, accumulées d'un emprunt à
+     * l'autre. Les phases mesurées par un enregistreur se succèdent sans s'imbriquer :
+     * {@link #begin()} pose un repère et chaque {@link #lap(Phase, int)} attribue à une
+     * phase le temps et la mémoire écoulés depuis le repère précédent, puis le déplace.
+     */
+    final class Recorder {
+        private final long[] nanos = new long[Phase.values().length * (analyzerNames.size() + 1)];
+        private final long[] calls = new long[nanos.length];
+        private final long[] allocated = new long[nanos.length];
+        private final QuantileSketch parseLatency = new QuantileSketch();
+        private final PriorityQueue<FileTiming> slowest = new PriorityQueue<>(BY_DURATION);
+        private final List<FileTiming> parseErrors = new ArrayList<>();
+        private final PhaseListener listener;
+        private long files;
+        private long bytesRead;
+        private long cached;
+        private long parsed;
+        private long notParsed;
+        private String file;
+        private long fileBytes;
+        private long markNanos;
+        private long markBytes;
+
+        private Recorder(PhaseListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Pose le repère à partir duquel la prochaine phase est mesurée.
+         */
+        void begin() {
+            markNanos = System.nanoTime();
+            markBytes = allocatedBytes();
+            if (listener != null) {
+                listener.begin();
+            }
+        }
+
+        /**
+         * Termine une phase et commence la suivante.
+         *
+         * @param phase    La phase qui vient de se terminer.
+         * @param analyzer L'index de la passe concernée, ou -1 pour une phase commune.
+         */
+        void lap(Phase phase, int analyzer) {
+            long now = System.nanoTime();
+            long bytes = allocatedBytes();
+            long elapsed = now - markNanos;
+            int slot = phase.ordinal() * (analyzerNames.size() + 1) + analyzer + 1;
+            nanos[slot] += elapsed;
+            calls[slot]++;
+            allocated[slot] += bytes - markBytes;
+            if (phase == Phase.PARSE) {
+                parsed++;
+                parseLatency.add(elapsed / 1e6);
+                keepSlowest(slowest, new FileTiming(file, elapsed, fileBytes, null));
+            }
+            if (listener != null) {
+                listener.end(slotName(slot), file, bytes - markBytes);
+                listener.begin();
+            }
+            markNanos = now;
+            markBytes = bytes;
+        }
+
+        /**
+         * Commence la mesure d'un fichier dont le contenu vient d'être lu.
+         */
+        void fileRead(String file, long bytes) {
+            this.file = file;
+            this.fileBytes = bytes;
+            files++;
+            bytesRead += bytes;
+        }
+
+        void cached() {
+            cached++;
+        }
+
+        /**
+         * Aucune passe n'a accepté le fichier : il n'est pas parsé.
+         */
+        void notParsed() {
+            notParsed++;
+        }
+
+        void parseError(String message) {
+            parseErrors.add(new FileTiming(file, 0, fileBytes, message));
+        }
+
+        /**
+         * Termine la mesure du fichier courant ou de la phase courante et rend
+         * l'enregistreur.
+         */
+        void end() {
+            file = null;
+            if (listener != null) {
+                listener.cancel();
+            }
+            idle.offer(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.istic.vv.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * Découverte des fichiers Java d'un projet par un parcours parallèle des répertoires :
+ * chaque sous-répertoire est listé par une tâche distincte du pool, si bien que les
+ * listages, bloqués sur le système de fichiers, se recouvrent.
+ * <p>
+ * Comme SourceRoot, le parcours ignore les répertoires cachés ou dont le nom n'est
+ * pas un identifiant Java valide, et ne suit pas les liens symboliques vers des
+ * répertoires.
+ */
+public final class SourceFiles {
+
+    private static final Pattern JAVA_IDENTIFIER = Pattern.compile("\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+
+    private SourceFiles() {
+    }
+
+    /**
+     * Liste les fichiers Java d'un projet, triés par chemin.
+     *
+     * @param root La racine du projet.
+     * @param pool Le pool sur lequel les répertoires sont listés.
+     * @return Les fichiers trouvés.
+     */
+    public static List<Path> discover(Path root, ForkJoinPool pool) {
+        List<Path> files = pool.invoke(new DirectoryTask(root, root));
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Indique si un répertoire du projet contient des sources à analyser.
+     *
+     * @param root La racine du projet, toujours acceptée.
+     * @param dir  Un répertoire du projet.
+     */
+    public static boolean isSourceDirectory(Path root, Path dir) throws IOException {
+        return dir.equals(root)
+                || (!Files.isHidden(dir) && JAVA_IDENTIFIER.matcher(dir.getFileName().toString()).matches());
+    }
+
+    private static final class DirectoryTask extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path dir;
+
+        DirectoryTask(Path root, Path dir) {
+            this.root = root;
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> files = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (isSourceDirectory(root, entry)) {
+                            DirectoryTask task = new DirectoryTask(root, entry);
+                            task.fork();
+                            subdirectories.add(task);
+                        }
+                    } else if (entry.getFileName().toString().endsWith(".java")) {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to list source files in " + dir, e);
+            }
+            for (DirectoryTask task : subdirectories) {
+                files.addAll(task.join());
+            }
+            return files;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package fr.istic.vv.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lit et décode des fichiers source dans des tampons réutilisés d'un fichier à
+ * l'autre : un tampon pour les octets et un tableau de caractères pour le texte
+ * décodé. Le tampon d'octets est adossé à un tableau plutôt que direct, car le
+ * décodeur UTF-8 du JDK n'a de chemin rapide (ASCII) que pour ces tampons. Les gros
+ * fichiers sont projetés en mémoire ({@link FileChannel#map}) plutôt que copiés.
+ * <p>
+ * Les tampons ne grandissent que jusqu'à une taille limite ; un fichier plus gros
+ * est décodé dans un tableau alloué pour lui seul. Un SourceReader n'est pas
+ * thread-safe : le pipeline en utilise un par thread.
+ */
+public final class SourceReader {
+
+    /**
+     * Taille à partir de laquelle un fichier est projeté en mémoire plutôt que lu.
+     */
+    static final int MAP_THRESHOLD = 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    /**
+     * Taille au-delà de laquelle un tampon n'est pas gardé par {@link #trim()}.
+     */
+    static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private ByteBuffer content;
+    private char[] text;
+    private int length;
+
+    /**
+     * Lit le contenu d'un fichier, qui remplace celui du fichier précédent.
+     *
+     * @return Les octets du fichier, valables jusqu'à la lecture suivante.
+     */
+    public ByteBuffer read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return content;
+            }
+            if (bytes.capacity() <= size) {
+                bytes = ByteBuffer.allocate(Integer.highestOneBit((int) size) << 1);
+            }
+            bytes.clear();
+            // La taille annoncée peut changer pendant la lecture : on lit jusqu'à la fin
+            while (channel.read(bytes) >= 0) {
+                if (!bytes.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() << 1);
+                    bytes.flip();
+                    larger.put(bytes);
+                    bytes = larger;
+                }
+            }
+            bytes.flip();
+            content = bytes;
+            return content;
+        }
+    }
+
+    /**
+     * @return Les octets lus par le dernier {@link #read(Path)}, dans un tampon dont la
+     *         position peut être modifiée sans affecter le décodage.
+     */
+    public ByteBuffer content() {
+        return content.duplicate();
+    }
+
+    /**
+     * Décode en UTF-8 le contenu lu par {@link #read(Path)} ; les séquences invalides
+     * sont remplacées comme par {@code new String(bytes, UTF_8)}.
+     *
+     * @return Les caractères du fichier, dans les {@link #length()} premières cases.
+     *         Le tableau est réutilisé par le décodage suivant.
+     */
+    public char[] decode() {
+        ByteBuffer input = content.duplicate();
+        int capacity = input.remaining();
+        char[] target = chars;
+        if (target.length < capacity) {
+            target = new char[Integer.highestOneBit(capacity) << 1];
+            if (capacity < MAP_THRESHOLD) {
+                chars = target;
+            }
+        }
+        CharBuffer output = CharBuffer.wrap(target);
+        decoder.reset();
+        CoderResult result = decoder.decode(input, output, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(output);
+        }
+        if (!result.isUnderflow()) {
+            // Impossible en UTF-8 : un octet donne au plus un caractère
+            throw new IllegalStateException(new CharacterCodingException());
+        }
+        text = target;
+        length = output.position();
+        return text;
+    }
+
+    /**
+     * @return Le nombre de caractères décodés par le dernier {@link #decode()}.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Oublie le dernier fichier lu et rend les tampons agrandis par un gros fichier,
+     * pour qu'un lecteur au repos n'occupe que quelques dizaines de kilo-octets.
+     */
+    void trim() {
+        if (bytes.capacity() > RETAINED_CAPACITY) {
+            bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+        }
+        if (chars.length > RETAINED_CAPACITY) {
+            chars = new char[INITIAL_CAPACITY];
+        }
+        content = null;
+        text = null;
+        length = 0;
+    }
+}
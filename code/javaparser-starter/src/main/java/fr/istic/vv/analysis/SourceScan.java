@@ -0,0 +1,205 @@
+package fr.istic.vv.analysis;
+
+/**
+ * Pré-analyse lexicale d'un fichier source, bien moins coûteuse qu'un parsing : un
+ * seul parcours des caractères, qui ignore commentaires, chaînes et caractères
+ * littéraux et relève les mots-clés utiles pour savoir si une passe peut tirer
+ * quelque chose du fichier (par exemple, la présence d'un type public).
+ */
+public final class SourceScan {
+
+    private boolean publicKeyword;
+    private boolean privateKeyword;
+    private boolean publicTopLevel;
+
+    private SourceScan() {
+    }
+
+    public static SourceScan of(String source) {
+        return of(source.toCharArray(), source.length());
+    }
+
+    /**
+     * Pré-analyse les {@code length} premiers caractères d'un tableau, par exemple le
+     * tampon de décodage réutilisé d'un {@link SourceReader}.
+     */
+    public static SourceScan of(char[] source, int length) {
+        SourceScan scan = new SourceScan();
+        Lexer lexer = new Lexer(source, length);
+        int depth = 0;
+        int token;
+        while ((token = lexer.next()) != Lexer.END) {
+            if (token == '{') {
+                depth++;
+            } else if (token == '}') {
+                depth--;
+            } else if (token == Lexer.WORD) {
+                if (lexer.wordIs("public")) {
+                    scan.publicKeyword = true;
+                    // Au niveau 0, seuls les types se déclarent avec des modificateurs
+                    scan.publicTopLevel |= depth == 0;
+                } else if (lexer.wordIs("private")) {
+                    scan.privateKeyword = true;
+                }
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * @return Vrai si le mot-clé {@code public} apparaît dans le code.
+     */
+    public boolean hasPublicKeyword() {
+        return publicKeyword;
+    }
+
+    /**
+     * @return Vrai si le mot-clé {@code private} apparaît dans le code.
+     */
+    public boolean hasPrivateKeyword() {
+        return privateKeyword;
+    }
+
+    /**
+     * @return Vrai si le fichier déclare un type public de premier niveau.
+     */
+    public boolean hasPublicTopLevelType() {
+        return publicTopLevel;
+    }
+
+    /**
+     * Remplace par des espaces le contenu des blocs qui suivent une parenthèse
+     * fermante ou une clause {@code throws} : corps de méthodes et de constructeurs,
+     * corps de classes anonymes ou de constantes d'enum, blocs d'instructions dans un
+     * initialiseur. Les sauts de ligne sont conservés, si bien que les positions des
+     * déclarations restent celles du fichier d'origine ; les corps de types, les
+     * initialiseurs et les lambdas de champs sont laissés intacts.
+     * <p>
+     * Les caractères sont remplacés sur place, dans les {@code length} premières cases du tableau.
+     */
+    static void stripBodies(char[] chars, int length) {
+        Lexer lexer = new Lexer(chars, length);
+        int previous = Lexer.END;
+        boolean throwsClause = false;
+        int token;
+        while ((token = lexer.next()) != Lexer.END) {
+            if (token == '{' && (previous == ')' || throwsClause)) {
+                int start = lexer.position();
+                int depth = 1;
+                while (depth > 0 && (token = lexer.next()) != Lexer.END) {
+                    if (token == '{') {
+                        depth++;
+                    } else if (token == '}') {
+                        depth--;
+                    }
+                }
+                int end = token == Lexer.END ? length : lexer.position() - 1;
+                for (int i = start; i < end; i++) {
+                    if (chars[i] != '\n' && chars[i] != '\r') {
+                        chars[i] = ' ';
+                    }
+                }
+                previous = '}';
+                throwsClause = false;
+                continue;
+            }
+            if (token == Lexer.WORD && lexer.wordIs("throws")) {
+                throwsClause = true;
+            } else if (token == ';' || token == '{' || token == '}') {
+                throwsClause = false;
+            }
+            previous = token;
+        }
+    }
+
+    /**
+     * Découpe le source en mots (identifiants et mots-clés), en caractères de
+     * ponctuation et en littéraux, sans allouer de chaîne.
+     */
+    private static final class Lexer {
+        static final int END = -1;
+        static final int WORD = -2;
+        static final int LITERAL = -3;
+
+        private final char[] source;
+        private final int length;
+        private int position;
+        private int wordStart;
+        private int wordEnd;
+
+        Lexer(char[] source, int length) {
+            this.source = source;
+            this.length = length;
+        }
+
+        int position() {
+            return position;
+        }
+
+        boolean wordIs(String word) {
+            if (wordEnd - wordStart != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (source[wordStart + i] != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return La position de la première occurrence de {@code text} à partir de {@code from}, ou -1.
+         */
+        private int indexOf(String text, int from) {
+            for (int i = from; i + text.length() <= length; i++) {
+                int matched = 0;
+                while (matched < text.length() && source[i + matched] == text.charAt(matched)) {
+                    matched++;
+                }
+                if (matched == text.length()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int next() {
+            while (position < length) {
+                char c = source[position];
+                if (Character.isWhitespace(c)) {
+                    position++;
+                } else if (c == '/' && position + 1 < length && source[position + 1] == '/') {
+                    while (position < length && source[position] != '\n') {
+                        position++;
+                    }
+                } else if (c == '/' && position + 1 < length && source[position + 1] == '*') {
+                    int end = indexOf("*/", position + 2);
+                    position = end < 0 ? length : end + 2;
+                } else if (c == '"' && position + 2 < length && source[position + 1] == '"' && source[position + 2] == '"') {
+                    int end = indexOf("\"\"\"", position + 3);
+                    position = end < 0 ? length : end + 3;
+                    return LITERAL;
+                } else if (c == '"' || c == '\'') {
+                    position++;
+                    while (position < length && source[position] != c && source[position] != '\n') {
+                        position += source[position] == '\\' ? 2 : 1;
+                    }
+                    position++;
+                    return LITERAL;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    wordStart = position;
+                    while (position < length && Character.isJavaIdentifierPart(source[position])) {
+                        position++;
+                    }
+                    wordEnd = position;
+                    return WORD;
+                } else {
+                    position++;
+                    return c;
+                }
+            }
+            return END;
+        }
+    }
+}
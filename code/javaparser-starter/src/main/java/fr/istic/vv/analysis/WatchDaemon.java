@@ -0,0 +1,296 @@
+package fr.istic.vv.analysis;
+
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.IntHistogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Mode surveillance : analyse le projet une première fois puis reste à l'écoute des
+ * modifications de fichiers (WatchService) et ne réanalyse que les fichiers modifiés.
+ * <p>
+ * Les résultats compacts de chaque fichier sont conservés dans un cache LRU borné.
+ * Les modifications arrivant en rafale (sauvegarde de plusieurs fichiers,
+ * éditeurs qui écrivent en plusieurs fois) sont regroupées : un lot n'est traité
+ * qu'après {@link #setDebounce(long) un délai} sans nouvel événement. Pour chaque
+ * fichier modifié, les passes écrivent la différence entre l'ancien et le nouveau
+ * résultat ({@link Analyzer#reportChange}), puis un enregistrement {@code update}
+ * donne le nombre de fichiers et la latence entre le premier événement du lot et
+ * l'écriture. Un fichier écarté par le mode protégé (quarantaine, taille, temps
+ * ou pile) donne un enregistrement {@code skippedFile} plutôt qu'une différence.
+ * <p>
+ * Le daemon lit des commandes sur l'entrée standard, une par ligne :
+ * {@code report} produit le rapport complet (les fichiers encore en cache ne sont
+ * pas reparsés), {@code quit} arrête la surveillance.
+ */
+public class WatchDaemon {
+
+    private static final long IDLE_POLL_MILLIS = 200;
+
+    private final Path sourceRoot;
+    private final Supplier<AnalysisPipeline> pipelines;
+    private final ReportSink sink;
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final IntHistogram latencies = new IntHistogram();
+    private long debounceMillis = 20;
+    private int cacheSize = 100_000;
+    private LruResultCache cache;
+    private AnalysisPipeline current;
+
+    /**
+     * @param sourceRoot La racine du projet surveillé.
+     * @param pipelines  Crée un pipeline configuré, avec des passes neuves, pour la racine.
+     * @param sink       Le rapport dans lequel sont écrits les résultats et les changements.
+     */
+    public WatchDaemon(Path sourceRoot, Supplier<AnalysisPipeline> pipelines, ReportSink sink) {
+        this.sourceRoot = sourceRoot;
+        this.pipelines = pipelines;
+        this.sink = sink;
+    }
+
+    /**
+     * Fixe le délai sans nouvel événement après lequel un lot de modifications est traité.
+     */
+    public WatchDaemon setDebounce(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+        return this;
+    }
+
+    /**
+     * Fixe le nombre maximal de fichiers dont les résultats restent en mémoire.
+     */
+    public WatchDaemon setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * Surveille le projet jusqu'à la commande {@code quit}.
+     */
+    public void run() throws IOException, InterruptedException {
+        cache = new LruResultCache(cacheSize);
+        current = pipelines.get();
+        try (WatchService watcher = sourceRoot.getFileSystem().newWatchService()) {
+            register(sourceRoot, watcher, null);
+            fullReport();
+            startCommandReader();
+
+            Set<Path> pending = new LinkedHashSet<>();
+            long firstEvent = 0;
+            long lastEvent = 0;
+            boolean running = true;
+            while (running) {
+                String command = commands.poll();
+                if (command != null) {
+                    running = handle(command);
+                    continue;
+                }
+                WatchKey key = watcher.poll(pending.isEmpty() ? IDLE_POLL_MILLIS : debounceMillis, TimeUnit.MILLISECONDS);
+                long now = System.nanoTime();
+                if (key != null) {
+                    if (pending.isEmpty()) {
+                        firstEvent = now;
+                    }
+                    lastEvent = now;
+                    collectEvents(key, watcher, pending);
+                }
+                if (!pending.isEmpty() && now - lastEvent >= TimeUnit.MILLISECONDS.toNanos(debounceMillis)) {
+                    update(pending, firstEvent);
+                    pending.clear();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Arrêt demandé pendant l'attente
+        }
+        if (latencies.count() > 0) {
+            sink.aggregate("latency", null)
+                    .field("updates", latencies.count())
+                    .field("p50Millis", latencies.quantile(0.5))
+                    .field("p99Millis", latencies.quantile(0.99))
+                    .field("maxMillis", latencies.max())
+                    .end();
+        }
+        sink.flush();
+    }
+
+    private boolean handle(String command) {
+        switch (command.trim()) {
+            case "report":
+                fullReport();
+                return true;
+            case "quit":
+                return false;
+            default:
+                sink.aggregate("unknownCommand", command).end();
+                sink.flush();
+                return true;
+        }
+    }
+
+    private void fullReport() {
+        // Le cache en mémoire remplace un éventuel fichier de cache
+        current = pipelines.get().setCache(null).setResultCache(cache).setReportSink(sink);
+        current.run();
+        sink.aggregate("ready", sourceRoot.toString()).field("directories", directories.size()).end();
+        sink.flush();
+    }
+
+    private void startCommandReader() {
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    commands.add(line);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading commands: " + e.getMessage());
+            }
+        }, "watch-commands");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Surveille un répertoire et ses sous-répertoires de sources. Les fichiers Java
+     * d'un répertoire apparu pendant la surveillance sont ajoutés à {@code created}.
+     */
+    private void register(Path root, WatchService watcher, Set<Path> created) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!current.isSourceDirectory(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (created != null && file.toString().endsWith(".java")) {
+                    created.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void collectEvents(WatchKey key, WatchService watcher, Set<Path> pending) throws IOException {
+        do {
+            Path dir = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Des événements ont été perdus : le rapport complet revérifie chaque fichier
+                    commands.add("report");
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    register(path, watcher, pending);
+                } else if (path.toString().endsWith(".java")) {
+                    pending.add(path);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+            key = watcher.poll();
+        } while (key != null);
+    }
+
+    /**
+     * Réanalyse les fichiers modifiés et écrit, pour chaque passe, la différence avec
+     * leurs résultats précédents.
+     */
+    private void update(Set<Path> files, long firstEvent) {
+        List<Analyzer<?>> analyzers = current.getAnalyzers();
+        int changed = 0;
+        for (Path file : files) {
+            String key = current.keyOf(file);
+            Object[] before = cache.get(key);
+            boolean evicted = before == null && cache.isKnown(key);
+            Object[] after;
+            if (Files.isRegularFile(file)) {
+                try {
+                    after = current.analyzeFile(file, cache);
+                } catch (IOException e) {
+                    // Fichier supprimé ou en cours d'écriture : un nouvel événement suivra
+                    continue;
+                }
+                if (reportSkipped()) {
+                    // Ses résultats vides ne disent rien du fichier : les précédents restent en cache
+                    continue;
+                }
+                if (after == null) {
+                    sink.aggregate("parseError", key).end();
+                    continue;
+                }
+            } else {
+                after = null;
+                cache.remove(key);
+            }
+            if (after == before && !evicted) {
+                continue;
+            }
+            changed++;
+            for (int i = 0; i < analyzers.size(); i++) {
+                reportChange(analyzers.get(i), key, before == null ? null : before[i],
+                        after == null ? null : after[i], evicted, sink);
+            }
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstEvent);
+        latencies.add((int) latency);
+        sink.aggregate("update", null)
+                .field("files", changed)
+                .field("latencyMillis", latency)
+                .end();
+        sink.flush();
+    }
+
+    /**
+     * Écrit un enregistrement {@code skippedFile} pour chaque fichier que le mode
+     * protégé vient d'écarter.
+     *
+     * @return Vrai si un fichier a été écarté.
+     */
+    private boolean reportSkipped() {
+        List<FileGuard.SkippedFile> skipped = current.drainSkippedFiles();
+        for (FileGuard.SkippedFile file : skipped) {
+            sink.aggregate("skippedFile", file.file)
+                    .field("reason", file.reason)
+                    .field("millis", file.nanos / 1e6)
+                    .end();
+        }
+        return !skipped.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void reportChange(Analyzer<R> analyzer, String file, Object before, Object after,
+                                         boolean evicted, ReportSink sink) {
+        analyzer.reportChange(file, (R) before, (R) after, evicted, sink);
+    }
+}
@@ -0,0 +1,205 @@
+package fr.istic.vv.graph;
+
+import java.util.Arrays;
+
+/**
+ * Graphe orienté de dépendances stocké au format CSR (compressed sparse row) :
+ * les successeurs du nœud {@code n} sont {@code targets[offsets[n]]} à
+ * {@code targets[offsets[n + 1] - 1]}, triés et sans doublon. Les nœuds sont les
+ * identifiants d'une {@link SymbolTable}. Le poids d'une arête est le nombre de fois
+ * où elle a été ajoutée au {@link Builder}.
+ */
+public class DependencyGraph {
+
+    public static final String DEFAULT_PACKAGE = "(default)";
+
+    private final SymbolTable symbols;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+
+    private DependencyGraph(SymbolTable symbols, int[] offsets, int[] targets, int[] weights) {
+        this.symbols = symbols;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public String name(int node) {
+        return symbols.name(node);
+    }
+
+    public int outDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * @return Le premier index de {@link #target(int)} pour les successeurs du nœud.
+     */
+    public int firstEdge(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * @return L'index suivant le dernier successeur du nœud.
+     */
+    public int lastEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public int weight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Regroupe les types par package. Une arête entre deux packages a pour poids le
+     * nombre de dépendances entre leurs types ; les dépendances internes à un package
+     * sont ignorées. Les types sans package (externes non résolus ou du package par
+     * défaut) sont regroupés sous {@value #DEFAULT_PACKAGE}.
+     */
+    public DependencyGraph aggregateByPackage() {
+        SymbolTable packages = new SymbolTable();
+        int[] packageOf = new int[nodeCount()];
+        for (int node = 0; node < packageOf.length; node++) {
+            packageOf[node] = packages.intern(packageName(name(node)));
+        }
+        Builder builder = new Builder(packages);
+        for (int node = 0; node < packageOf.length; node++) {
+            for (int edge = firstEdge(node); edge < lastEdge(node); edge++) {
+                int source = packageOf[node];
+                int target = packageOf[target(edge)];
+                if (source != target) {
+                    builder.addEdge(source, target, weight(edge));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Le package d'un nom qualifié : les segments qui précèdent le premier segment
+     * commençant par une majuscule, ce qui rattache les types imbriqués au package
+     * de leur type englobant.
+     */
+    static String packageName(String qualifiedName) {
+        int end = -1;
+        int start = 0;
+        while (start < qualifiedName.length()) {
+            if (Character.isUpperCase(qualifiedName.charAt(start))) {
+                break;
+            }
+            int dot = qualifiedName.indexOf('.', start);
+            if (dot < 0) {
+                break;
+            }
+            end = dot;
+            start = dot + 1;
+        }
+        return end < 0 ? DEFAULT_PACKAGE : qualifiedName.substring(0, end);
+    }
+
+    /**
+     * Construit un graphe à partir d'une liste d'arêtes accumulée dans des tableaux
+     * d'entiers extensibles.
+     */
+    public static class Builder {
+
+        private final SymbolTable symbols;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int[] weight = new int[64];
+        private int size;
+
+        public Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        public SymbolTable getSymbols() {
+            return symbols;
+        }
+
+        public Builder addEdge(int source, int target) {
+            return addEdge(source, target, 1);
+        }
+
+        public Builder addEdge(int source, int target, int edgeWeight) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            from[size] = source;
+            to[size] = target;
+            weight[size] = edgeWeight;
+            size++;
+            return this;
+        }
+
+        public Builder addEdge(String source, String target) {
+            return addEdge(symbols.intern(source), symbols.intern(target));
+        }
+
+        /**
+         * Trie les arêtes par source avec un tri par comptage puis fusionne les doublons
+         * en additionnant leurs poids, en temps linéaire en nombre d'arêtes et de nœuds
+         * (hors tri des successeurs de chaque nœud).
+         */
+        public DependencyGraph build() {
+            int nodes = symbols.size();
+            int[] offsets = new int[nodes + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int n = 0; n < nodes; n++) {
+                offsets[n + 1] += offsets[n];
+            }
+            // Cible et poids regroupés dans un long pour trier les deux ensemble
+            int[] cursor = Arrays.copyOf(offsets, nodes);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[cursor[from[i]]++] = ((long) to[i] << 32) | (weight[i] & 0xFFFFFFFFL);
+            }
+
+            int[] compactOffsets = new int[nodes + 1];
+            int[] targets = new int[size];
+            int[] weights = new int[size];
+            int written = 0;
+            for (int n = 0; n < nodes; n++) {
+                int start = offsets[n];
+                int end = offsets[n + 1];
+                Arrays.sort(sorted, start, end);
+                compactOffsets[n] = written;
+                for (int i = start; i < end; i++) {
+                    int target = (int) (sorted[i] >>> 32);
+                    int edgeWeight = (int) sorted[i];
+                    if (written > compactOffsets[n] && targets[written - 1] == target) {
+                        weights[written - 1] += edgeWeight;
+                    } else {
+                        targets[written] = target;
+                        weights[written] = edgeWeight;
+                        written++;
+                    }
+                }
+            }
+            compactOffsets[nodes] = written;
+            return new DependencyGraph(symbols, compactOffsets,
+                    Arrays.copyOf(targets, written), Arrays.copyOf(weights, written));
+        }
+    }
+}
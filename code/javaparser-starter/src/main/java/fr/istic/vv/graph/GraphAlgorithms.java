@@ -0,0 +1,290 @@
+package fr.istic.vv.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Algorithmes sur un {@link DependencyGraph}, tous itératifs (pas de récursion,
+ * donc pas de débordement de pile sur les grands graphes) et linéaires en nombre
+ * de nœuds et d'arêtes.
+ */
+public final class GraphAlgorithms {
+
+    /**
+     * Au-delà de ce nombre de composantes, la taille de la fermeture transitive est
+     * estimée plutôt que calculée exactement, pour rester linéaire en temps et en mémoire.
+     */
+    static final int EXACT_CLOSURE_LIMIT = 16_384;
+
+    private static final int SKETCH_SIZE = 64;
+
+    private GraphAlgorithms() {
+    }
+
+    /**
+     * Composantes fortement connexes (algorithme de Tarjan itératif).
+     */
+    public static class Components {
+        private final int[] component;
+        private final int[] sizes;
+
+        Components(int[] component, int[] sizes) {
+            this.component = component;
+            this.sizes = sizes;
+        }
+
+        /**
+         * @return La composante du nœud. Les composantes sont numérotées dans l'ordre
+         *         topologique inverse : une composante ne dépend que de composantes
+         *         de numéro inférieur.
+         */
+        public int of(int node) {
+            return component[node];
+        }
+
+        public int count() {
+            return sizes.length;
+        }
+
+        public int size(int component) {
+            return sizes[component];
+        }
+
+        /**
+         * @return Le nombre de cycles de dépendances, c'est-à-dire de composantes de plus d'un nœud.
+         */
+        public int cycleCount() {
+            int cycles = 0;
+            for (int size : sizes) {
+                if (size > 1) {
+                    cycles++;
+                }
+            }
+            return cycles;
+        }
+    }
+
+    public static Components stronglyConnectedComponents(DependencyGraph graph) {
+        int nodes = graph.nodeCount();
+        int[] index = new int[nodes];
+        int[] lowLink = new int[nodes];
+        int[] component = new int[nodes];
+        boolean[] onStack = new boolean[nodes];
+        Arrays.fill(index, -1);
+
+        int[] stack = new int[nodes];
+        int stackSize = 0;
+        // Pile d'appels explicite : nœud visité et prochaine arête à explorer
+        int[] callNode = new int[nodes];
+        int[] callEdge = new int[nodes];
+        int[] sizes = new int[Math.max(nodes, 1)];
+        int nextIndex = 0;
+        int components = 0;
+
+        for (int root = 0; root < nodes; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = graph.firstEdge(root);
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callNode[depth];
+                if (callEdge[depth] < graph.lastEdge(node)) {
+                    int next = graph.target(callEdge[depth]++);
+                    if (index[next] == -1) {
+                        index[next] = lowLink[next] = nextIndex++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        depth++;
+                        callNode[depth] = next;
+                        callEdge[depth] = graph.firstEdge(next);
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = components;
+                        sizes[components]++;
+                    } while (member != node);
+                    components++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return new Components(component, Arrays.copyOf(sizes, components));
+    }
+
+    /**
+     * @return Le nombre de dépendances directes de chaque nœud.
+     */
+    public static int[] fanOut(DependencyGraph graph) {
+        int[] fanOut = new int[graph.nodeCount()];
+        for (int node = 0; node < fanOut.length; node++) {
+            fanOut[node] = graph.outDegree(node);
+        }
+        return fanOut;
+    }
+
+    /**
+     * @return Le nombre de nœuds qui dépendent directement de chaque nœud.
+     */
+    public static int[] fanIn(DependencyGraph graph) {
+        int[] fanIn = new int[graph.nodeCount()];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            fanIn[graph.target(edge)]++;
+        }
+        return fanIn;
+    }
+
+    /**
+     * Taille de la fermeture transitive de chaque nœud : le nombre de nœuds qu'il
+     * atteint, lui-même exclu. Le calcul se fait sur le graphe des composantes,
+     * parcouru dans l'ordre topologique inverse. Il est exact (ensembles de bits)
+     * jusqu'à {@link #EXACT_CLOSURE_LIMIT} composantes ; au-delà, chaque composante
+     * propage une esquisse des {@value #SKETCH_SIZE} plus petits rangs aléatoires
+     * qu'elle atteint (estimateur de Cohen), en temps linéaire en nombre d'arêtes.
+     */
+    public static long[] transitiveClosureSizes(DependencyGraph graph, Components components) {
+        long[] reachable = components.count() <= EXACT_CLOSURE_LIMIT
+                ? exactReach(graph, components)
+                : estimatedReach(graph, components);
+        long[] sizes = new long[graph.nodeCount()];
+        for (int node = 0; node < sizes.length; node++) {
+            sizes[node] = reachable[components.of(node)] - 1;
+        }
+        return sizes;
+    }
+
+    /**
+     * Regroupe les arêtes entre composantes distinctes, par composante source.
+     */
+    private static int[][] componentEdges(DependencyGraph graph, Components components) {
+        int count = components.count();
+        int[] degree = new int[count + 1];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int e = graph.firstEdge(node); e < graph.lastEdge(node); e++) {
+                if (components.of(graph.target(e)) != components.of(node)) {
+                    degree[components.of(node) + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            degree[c + 1] += degree[c];
+        }
+        int[] offsets = Arrays.copyOf(degree, count + 1);
+        int[] targets = new int[degree[count]];
+        int[] cursor = Arrays.copyOf(degree, count);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int source = components.of(node);
+            for (int e = graph.firstEdge(node); e < graph.lastEdge(node); e++) {
+                int target = components.of(graph.target(e));
+                if (target != source) {
+                    targets[cursor[source]++] = target;
+                }
+            }
+        }
+        return new int[][] {offsets, targets};
+    }
+
+    private static long[] exactReach(DependencyGraph graph, Components components) {
+        int count = components.count();
+        int[][] edges = componentEdges(graph, components);
+        int[] offsets = edges[0];
+        int[] targets = edges[1];
+        int words = (count + 63) >>> 6;
+        long[][] reach = new long[count][];
+        long[] result = new long[count];
+        // Les composantes sont numérotées dans l'ordre topologique inverse
+        for (int c = 0; c < count; c++) {
+            long[] bits = new long[words];
+            bits[c >>> 6] |= 1L << c;
+            for (int e = offsets[c]; e < offsets[c + 1]; e++) {
+                long[] successor = reach[targets[e]];
+                for (int w = 0; w < words; w++) {
+                    bits[w] |= successor[w];
+                }
+            }
+            reach[c] = bits;
+            long total = 0;
+            for (int w = 0; w < words; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    total += components.size((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            result[c] = total;
+        }
+        return result;
+    }
+
+    private static long[] estimatedReach(DependencyGraph graph, Components components) {
+        int count = components.count();
+        int[][] edges = componentEdges(graph, components);
+        int[] offsets = edges[0];
+        int[] targets = edges[1];
+        Random random = new Random(42);
+        // Rang aléatoire de chaque nœud, regroupés par composante
+        double[][] sketches = new double[count][];
+        double[][] ownRanks = new double[count][];
+        int[] filled = new int[count];
+        for (int c = 0; c < count; c++) {
+            ownRanks[c] = new double[components.size(c)];
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int c = components.of(node);
+            ownRanks[c][filled[c]++] = random.nextDouble();
+        }
+        long[] result = new long[count];
+        double[] merged = new double[SKETCH_SIZE * 2];
+        for (int c = 0; c < count; c++) {
+            double[] ranks = ownRanks[c];
+            Arrays.sort(ranks);
+            double[] sketch = Arrays.copyOf(ranks, Math.min(ranks.length, SKETCH_SIZE));
+            for (int e = offsets[c]; e < offsets[c + 1]; e++) {
+                sketch = mergeSketches(sketch, sketches[targets[e]], merged);
+            }
+            sketches[c] = sketch;
+            ownRanks[c] = null;
+            result[c] = sketch.length < SKETCH_SIZE
+                    ? sketch.length
+                    : Math.round((SKETCH_SIZE - 1) / sketch[SKETCH_SIZE - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Fusionne deux esquisses triées en gardant les plus petits rangs distincts.
+     */
+    private static double[] mergeSketches(double[] left, double[] right, double[] buffer) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (n < SKETCH_SIZE && (i < left.length || j < right.length)) {
+            double value;
+            if (j >= right.length || (i < left.length && left[i] <= right[j])) {
+                value = left[i++];
+            } else {
+                value = right[j++];
+            }
+            if (n == 0 || buffer[n - 1] != value) {
+                buffer[n++] = value;
+            }
+        }
+        return Arrays.copyOf(buffer, n);
+    }
+}
@@ -0,0 +1,38 @@
+package fr.istic.vv.graph;
+
+/**
+ * Les formats d'export d'un {@link DependencyGraph}.
+ */
+public enum GraphFormat {
+    /** Graphviz. */
+    DOT("dot"),
+    /** XML GraphML, lisible par Gephi, yEd ou Cytoscape. */
+    GRAPHML("graphml"),
+    /** Liste d'arêtes {@code source,target,weight} avec une ligne d'en-tête. */
+    CSV("csv"),
+    /** Format binaire compact décrit dans {@link GraphWriter}. */
+    BINARY("bin");
+
+    private final String extension;
+
+    GraphFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return Le format correspondant à un nom ({@code dot}, {@code graphml}, {@code csv}
+     *         ou {@code binary}/{@code bin}), sans tenir compte de la casse.
+     */
+    public static GraphFormat parse(String name) {
+        for (GraphFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown graph format: " + name);
+    }
+}
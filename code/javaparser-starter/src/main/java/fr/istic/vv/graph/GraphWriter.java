@@ -0,0 +1,141 @@
+package fr.istic.vv.graph;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Exporte un {@link DependencyGraph} en parcourant directement ses tableaux CSR :
+ * chaque arête est encodée dans le tampon fixe d'un {@link ChannelOutput}, sans
+ * construire le fichier en mémoire, si bien que la mémoire utilisée reste la même
+ * quel que soit le nombre d'arêtes.
+ * <p>
+ * Le format binaire ({@link GraphFormat#BINARY}) est le suivant, les entiers
+ * « varint » étant codés sur 7 bits par octet :
+ * <pre>
+ * "DGRF"  magic (4 octets)
+ * int     version (1)
+ * int     nombre de nœuds N
+ * int     nombre d'arêtes
+ * N fois  varint longueur + nom en UTF-8
+ * N fois  varint degré sortant, puis pour chaque successeur :
+ *         varint écart avec le successeur précédent (les successeurs sont triés), varint poids
+ * </pre>
+ */
+public final class GraphWriter {
+
+    private static final int BINARY_VERSION = 1;
+
+    private GraphWriter() {
+    }
+
+    public static void write(DependencyGraph graph, GraphFormat format, Path file) throws IOException {
+        try (ChannelOutput out = ChannelOutput.create(file)) {
+            write(graph, format, out);
+        }
+    }
+
+    public static void write(DependencyGraph graph, GraphFormat format, ChannelOutput out) throws IOException {
+        switch (format) {
+            case DOT:
+                writeDot(graph, out);
+                break;
+            case GRAPHML:
+                writeGraphMl(graph, out);
+                break;
+            case CSV:
+                writeCsv(graph, out);
+                break;
+            case BINARY:
+                writeBinary(graph, out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported graph format: " + format);
+        }
+    }
+
+    private static void writeDot(DependencyGraph graph, ChannelOutput out) throws IOException {
+        out.write("digraph G {\n");
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                out.write('"').write(graph.name(node)).write("\" -> \"").write(graph.name(graph.target(edge))).write('"');
+                if (graph.weight(edge) > 1) {
+                    out.write(" [weight=").writeDecimal(graph.weight(edge))
+                            .write(", label=\"").writeDecimal(graph.weight(edge)).write("\"]");
+                }
+                out.write(";\n");
+            }
+        }
+        out.write("}\n");
+    }
+
+    private static void writeGraphMl(DependencyGraph graph, ChannelOutput out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        out.write("  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n");
+        out.write("  <key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"int\"/>\n");
+        out.write("  <graph id=\"G\" edgedefault=\"directed\">\n");
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            out.write("    <node id=\"n").writeDecimal(node).write("\"><data key=\"name\">");
+            writeXmlEscaped(graph.name(node), out);
+            out.write("</data></node>\n");
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                out.write("    <edge source=\"n").writeDecimal(node)
+                        .write("\" target=\"n").writeDecimal(graph.target(edge))
+                        .write("\"><data key=\"weight\">").writeDecimal(graph.weight(edge)).write("</data></edge>\n");
+            }
+        }
+        out.write("  </graph>\n</graphml>\n");
+    }
+
+    private static void writeXmlEscaped(String text, ChannelOutput out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+    private static void writeCsv(DependencyGraph graph, ChannelOutput out) throws IOException {
+        out.write("source,target,weight\n");
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                // Les noms de types Java ne contiennent ni virgule ni guillemet
+                out.write(graph.name(node)).write(',').write(graph.name(graph.target(edge)))
+                        .write(',').writeDecimal(graph.weight(edge)).write('\n');
+            }
+        }
+    }
+
+    private static void writeBinary(DependencyGraph graph, ChannelOutput out) throws IOException {
+        out.write("DGRF").writeInt(BINARY_VERSION).writeInt(graph.nodeCount()).writeInt(graph.edgeCount());
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            out.writeString(graph.name(node));
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            out.writeVarInt(graph.outDegree(node));
+            int previous = 0;
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                out.writeVarInt(graph.target(edge) - previous).writeVarInt(graph.weight(edge));
+                previous = graph.target(edge);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fr.istic.vv.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Associe chaque nom à un identifiant entier dense (0, 1, 2...). Chaque nom
+ * n'est stocké qu'une fois, les structures qui l'utilisent ne manipulent que
+ * des entiers.
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @return L'identifiant du nom, attribué lors de sa première rencontre.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @return L'identifiant du nom, ou -1 s'il n'a jamais été rencontré.
+     */
+    public int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,218 @@
+package fr.istic.vv.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Écriture bufferisée vers un canal NIO. Le texte est encodé en UTF-8 directement
+ * dans un tampon de taille fixe, vidé dans le canal lorsqu'il est plein : la mémoire
+ * utilisée ne dépend pas de la quantité de données écrites et aucune chaîne
+ * intermédiaire n'est allouée.
+ */
+public class ChannelOutput implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean closeChannel;
+
+    public ChannelOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE, true);
+    }
+
+    public ChannelOutput(WritableByteChannel channel, int bufferSize, boolean closeChannel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.closeChannel = closeChannel;
+    }
+
+    /**
+     * Ouvre un fichier en écriture, en le remplaçant s'il existe.
+     */
+    public static ChannelOutput create(Path file) throws IOException {
+        return new ChannelOutput(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    public ChannelOutput write(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ensure(1);
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensure(4);
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                ensure(3);
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return this;
+    }
+
+    public ChannelOutput write(char c) throws IOException {
+        if (c < 0x80) {
+            ensure(1);
+            buffer.put((byte) c);
+            return this;
+        }
+        return write(String.valueOf(c));
+    }
+
+    /**
+     * Écrit un entier en décimal sans passer par une chaîne.
+     */
+    public ChannelOutput writeDecimal(long value) throws IOException {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            return write("-9223372036854775808");
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+        return this;
+    }
+
+    /**
+     * Écrit un nombre décimal arrondi à {@code decimals} chiffres après la virgule
+     * (au plus 9), comme {@code String.format("%.2f")} mais sans allocation.
+     */
+    public ChannelOutput writeFixed(double value, int decimals) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return write(Double.toString(value));
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            writeByte('-');
+        }
+        writeDecimal(scaled / scale);
+        if (decimals > 0) {
+            writeByte('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                writeByte((int) ('0' + (fraction / digit) % 10));
+            }
+        }
+        return this;
+    }
+
+    public ChannelOutput writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+        return this;
+    }
+
+    public ChannelOutput writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public ChannelOutput writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public ChannelOutput writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    /**
+     * Écrit un entier positif sur 1 à 5 octets (7 bits par octet, bit de poids fort
+     * indiquant la présence d'un octet suivant).
+     */
+    public ChannelOutput writeVarInt(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+
+    /**
+     * Écrit une chaîne précédée de sa longueur en octets UTF-8 (varint).
+     */
+    public ChannelOutput writeString(String value) throws IOException {
+        writeVarInt(utf8Length(value));
+        return write(value);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+}
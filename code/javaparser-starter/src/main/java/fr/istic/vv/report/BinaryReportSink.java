@@ -0,0 +1,100 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Format binaire compact. Le flux commence par {@code "RPRT"} et un entier de version,
+ * puis contient une suite d'octets de balise :
+ * <pre>
+ * 1  début d'enregistrement : chaîne type, octet 0/1 présence du sujet, chaîne sujet
+ * 2  champ entier : clé, varlong zigzag
+ * 3  champ décimal : clé, double (8 octets)
+ * 4  champ texte : clé, chaîne
+ * 5  fin d'enregistrement
+ * 6  message : chaîne
+ * </pre>
+ * Les chaînes sont préfixées par leur longueur UTF-8 (varint). Une clé est écrite
+ * comme un varint : son numéro si elle a déjà été rencontrée, sinon le prochain
+ * numéro libre suivi du nom de la clé.
+ */
+public class BinaryReportSink extends ReportSink {
+
+    private static final int VERSION = 1;
+
+    private final Map<String, Integer> keys = new HashMap<>();
+    private boolean headerWritten;
+
+    public BinaryReportSink(ChannelOutput out) {
+        super(out);
+    }
+
+    private void header() throws IOException {
+        if (!headerWritten) {
+            out.write("RPRT").writeInt(VERSION);
+            headerWritten = true;
+        }
+    }
+
+    @Override
+    protected void beginRecord(String type, String subject) throws IOException {
+        header();
+        out.writeByte(1).writeString(type);
+        if (subject == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1).writeString(subject);
+        }
+    }
+
+    private void writeKey(String key) throws IOException {
+        Integer id = keys.get(key);
+        if (id != null) {
+            out.writeVarInt(id);
+        } else {
+            id = keys.size();
+            keys.put(key, id);
+            out.writeVarInt(id).writeString(key);
+        }
+    }
+
+    @Override
+    protected void writeField(String key, String value) throws IOException {
+        out.writeByte(4);
+        writeKey(key);
+        out.writeString(value);
+    }
+
+    @Override
+    protected void writeField(String key, long value) throws IOException {
+        out.writeByte(2);
+        writeKey(key);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    @Override
+    protected void writeField(String key, double value) throws IOException {
+        out.writeByte(3);
+        writeKey(key);
+        out.writeDouble(value);
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        out.writeByte(5);
+    }
+
+    @Override
+    protected void writeMessage(String text) throws IOException {
+        header();
+        out.writeByte(6).writeString(text);
+    }
+}
@@ -0,0 +1,100 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.IOException;
+
+/**
+ * Format CSV « long » : une ligne {@code type,subject,key,value} par champ, ce qui
+ * permet de mêler des enregistrements de types différents dans un même fichier.
+ * Les messages ne sont pas écrits ; un enregistrement sans champ occupe une ligne
+ * dont la clé et la valeur sont vides.
+ */
+public class CsvReportSink extends ReportSink {
+
+    private String type;
+    private String subject;
+    private boolean headerWritten;
+    private boolean hasFields;
+
+    public CsvReportSink(ChannelOutput out) {
+        super(out);
+    }
+
+    @Override
+    protected void beginRecord(String type, String subject) throws IOException {
+        if (!headerWritten) {
+            out.write("type,subject,key,value\n");
+            headerWritten = true;
+        }
+        this.type = type;
+        this.subject = subject;
+        hasFields = false;
+    }
+
+    private void writePrefix(String key) throws IOException {
+        hasFields = true;
+        writeCell(type);
+        out.write(',');
+        writeCell(subject == null ? "" : subject);
+        out.write(',');
+        writeCell(key);
+        out.write(',');
+    }
+
+    @Override
+    protected void writeField(String key, String value) throws IOException {
+        writePrefix(key);
+        writeCell(value);
+        out.write('\n');
+    }
+
+    @Override
+    protected void writeField(String key, long value) throws IOException {
+        writePrefix(key);
+        out.writeDecimal(value).write('\n');
+    }
+
+    @Override
+    protected void writeField(String key, double value) throws IOException {
+        writePrefix(key);
+        out.write(Double.toString(value)).write('\n');
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        if (!hasFields) {
+            writePrefix("");
+            out.write('\n');
+        }
+    }
+
+    @Override
+    protected void writeMessage(String text) {
+    }
+
+    /**
+     * Entoure la cellule de guillemets si elle contient un séparateur, un guillemet ou
+     * un saut de ligne (les signatures de méthodes contiennent des virgules).
+     */
+    private void writeCell(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
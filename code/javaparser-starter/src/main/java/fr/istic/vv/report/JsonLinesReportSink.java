@@ -0,0 +1,98 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.IOException;
+
+/**
+ * Un objet JSON par ligne : {@code {"type":"method","subject":"...","complexity":3}}.
+ * Les messages deviennent des objets de type {@code message}.
+ */
+public class JsonLinesReportSink extends ReportSink {
+
+    public JsonLinesReportSink(ChannelOutput out) {
+        super(out);
+    }
+
+    @Override
+    protected void beginRecord(String type, String subject) throws IOException {
+        out.write("{\"type\":");
+        writeString(type);
+        if (subject != null) {
+            out.write(",\"subject\":");
+            writeString(subject);
+        }
+    }
+
+    @Override
+    protected void writeField(String key, String value) throws IOException {
+        writeKey(key);
+        writeString(value);
+    }
+
+    @Override
+    protected void writeField(String key, long value) throws IOException {
+        writeKey(key);
+        out.writeDecimal(value);
+    }
+
+    @Override
+    protected void writeField(String key, double value) throws IOException {
+        writeKey(key);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.write("null");
+        } else {
+            out.write(Double.toString(value));
+        }
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        out.write("}\n");
+    }
+
+    @Override
+    protected void writeMessage(String text) throws IOException {
+        out.write("{\"type\":\"message\",\"text\":");
+        writeString(text);
+        out.write("}\n");
+    }
+
+    private void writeKey(String key) throws IOException {
+        out.write(',');
+        writeString(key);
+        out.write(':');
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write("\\u00");
+                        out.write(Character.forDigit(c >> 4, 16)).write(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
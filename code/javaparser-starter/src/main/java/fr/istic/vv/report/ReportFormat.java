@@ -0,0 +1,68 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+
+/**
+ * Les formats de rapport disponibles.
+ */
+public enum ReportFormat {
+    TEXT("txt"),
+    JSONL("jsonl"),
+    CSV("csv"),
+    BINARY("bin");
+
+    private final String extension;
+
+    ReportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return L'extension des fichiers de rapport dans ce format, sans le point.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public ReportSink create(ChannelOutput out) {
+        switch (this) {
+            case JSONL:
+                return new JsonLinesReportSink(out);
+            case CSV:
+                return new CsvReportSink(out);
+            case BINARY:
+                return new BinaryReportSink(out);
+            default:
+                return new TextReportSink(out);
+        }
+    }
+
+    /**
+     * Crée un rapport écrit dans un fichier, ou sur la sortie standard si {@code file} est null.
+     */
+    public ReportSink open(Path file) throws IOException {
+        return create(file == null ? standardOutput() : ChannelOutput.create(file));
+    }
+
+    /**
+     * Un canal sur le descripteur de la sortie standard, qui contourne le
+     * PrintStream synchronisé de System.out. Le canal n'est pas fermé avec le rapport.
+     */
+    public static ChannelOutput standardOutput() {
+        return new ChannelOutput(new FileOutputStream(java.io.FileDescriptor.out).getChannel(), 64 * 1024, false);
+    }
+
+    public static ReportFormat parse(String name) {
+        for (ReportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown report format: " + name);
+    }
+}
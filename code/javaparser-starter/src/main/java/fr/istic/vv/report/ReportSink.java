@@ -0,0 +1,140 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Destination des rapports d'analyse. Un rapport est une suite d'enregistrements
+ * structurés (un type, un sujet et des champs nommés) et de messages libres, écrits
+ * au fil de l'eau dans le tampon d'un {@link ChannelOutput} sans formatage
+ * intermédiaire en chaîne :
+ * <pre>
+ * sink.element("method", signature).field("complexity", 3).end();
+ * </pre>
+ * Les enregistrements par élément (méthode, classe, champ...) peuvent être
+ * supprimés avec {@link #setElementsEnabled(boolean)} pour ne garder que les
+ * agrégats (histogrammes, résumés).
+ * <p>
+ * Un ReportSink n'est pas thread-safe : les rapports sont produits par un seul thread.
+ */
+public abstract class ReportSink implements Closeable {
+
+    protected final ChannelOutput out;
+    private boolean elementsEnabled = true;
+    private boolean skipping;
+
+    protected ReportSink(ChannelOutput out) {
+        this.out = out;
+    }
+
+    public ReportSink setElementsEnabled(boolean elementsEnabled) {
+        this.elementsEnabled = elementsEnabled;
+        return this;
+    }
+
+    /**
+     * Commence un enregistrement décrivant un élément du code analysé, ignoré si les
+     * éléments sont désactivés.
+     */
+    public final ReportSink element(String type, String subject) {
+        skipping = !elementsEnabled;
+        if (!skipping) {
+            io(() -> beginRecord(type, subject));
+        }
+        return this;
+    }
+
+    /**
+     * Commence un enregistrement agrégé, toujours écrit.
+     */
+    public final ReportSink aggregate(String type, String subject) {
+        skipping = false;
+        io(() -> beginRecord(type, subject));
+        return this;
+    }
+
+    public final ReportSink field(String key, String value) {
+        checkKey(key);
+        if (!skipping) {
+            io(() -> writeField(key, value));
+        }
+        return this;
+    }
+
+    public final ReportSink field(String key, long value) {
+        checkKey(key);
+        if (!skipping) {
+            io(() -> writeField(key, value));
+        }
+        return this;
+    }
+
+    public final ReportSink field(String key, double value) {
+        checkKey(key);
+        if (!skipping) {
+            io(() -> writeField(key, value));
+        }
+        return this;
+    }
+
+    /**
+     * Les formats structurés écrivent le type et le sujet de l'enregistrement sous les
+     * clés {@code type} et {@code subject} : un champ du même nom les masquerait.
+     */
+    private static void checkKey(String key) {
+        if (key.equals("type") || key.equals("subject")) {
+            throw new IllegalArgumentException("Reserved field name: " + key);
+        }
+    }
+
+    public final void end() {
+        if (!skipping) {
+            io(this::endRecord);
+        }
+        skipping = false;
+    }
+
+    /**
+     * Écrit un message libre (en-tête, information), que les formats structurés
+     * peuvent ignorer.
+     */
+    public final void message(String text) {
+        io(() -> writeMessage(text));
+    }
+
+    public void flush() {
+        io(out::flush);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    protected abstract void beginRecord(String type, String subject) throws IOException;
+
+    protected abstract void writeField(String key, String value) throws IOException;
+
+    protected abstract void writeField(String key, long value) throws IOException;
+
+    protected abstract void writeField(String key, double value) throws IOException;
+
+    protected abstract void endRecord() throws IOException;
+
+    protected abstract void writeMessage(String text) throws IOException;
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static void io(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing report", e);
+        }
+    }
+}
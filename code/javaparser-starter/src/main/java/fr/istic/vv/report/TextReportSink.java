@@ -0,0 +1,67 @@
+package fr.istic.vv.report;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.IOException;
+
+/**
+ * Rapport lisible, une ligne par enregistrement :
+ * {@code sujet : clé = valeur, clé = valeur}, ou le sujet seul s'il n'y a aucun champ. Les nombres décimaux sont arrondis
+ * à deux chiffres.
+ */
+public class TextReportSink extends ReportSink {
+
+    private boolean firstField;
+    private boolean hasSubject;
+
+    public TextReportSink(ChannelOutput out) {
+        super(out);
+    }
+
+    @Override
+    protected void beginRecord(String type, String subject) throws IOException {
+        firstField = true;
+        hasSubject = subject != null;
+        if (hasSubject) {
+            out.write(subject);
+        }
+    }
+
+    private void separator(String key) throws IOException {
+        if (!firstField) {
+            out.write(", ");
+        } else if (hasSubject) {
+            out.write(" : ");
+        }
+        firstField = false;
+        out.write(key).write(" = ");
+    }
+
+    @Override
+    protected void writeField(String key, String value) throws IOException {
+        separator(key);
+        out.write(value);
+    }
+
+    @Override
+    protected void writeField(String key, long value) throws IOException {
+        separator(key);
+        out.writeDecimal(value);
+    }
+
+    @Override
+    protected void writeField(String key, double value) throws IOException {
+        separator(key);
+        out.writeFixed(value, 2);
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        out.write('\n');
+    }
+
+    @Override
+    protected void writeMessage(String text) throws IOException {
+        out.write(text).write('\n');
+    }
+}
@@ -0,0 +1,117 @@
+package fr.istic.vv.stats;
+
+/**
+ * Histogramme de valeurs décimales réparties dans un nombre fixe d'intervalles,
+ * de largeur constante ({@link #linear}) ou croissant géométriquement
+ * ({@link #logarithmic}) entre deux bornes. Les valeurs hors bornes sont comptées
+ * à part. L'ajout d'une valeur n'alloue rien ; deux histogrammes de mêmes
+ * intervalles se fusionnent avec {@link #merge(DoubleHistogram)}.
+ */
+public class DoubleHistogram {
+
+    private final double min;
+    private final double max;
+    private final boolean logarithmic;
+    private final double scale;
+    private final long[] counts;
+    private long below;
+    private long above;
+    private long total;
+
+    private DoubleHistogram(double min, double max, int buckets, boolean logarithmic) {
+        if (buckets < 1 || !(max > min)) {
+            throw new IllegalArgumentException("Invalid histogram range or bucket count");
+        }
+        this.min = min;
+        this.max = max;
+        this.logarithmic = logarithmic;
+        this.scale = buckets / (logarithmic ? Math.log(max / min) : max - min);
+        this.counts = new long[buckets];
+    }
+
+    /**
+     * Intervalles de même largeur entre {@code min} et {@code max}.
+     */
+    public static DoubleHistogram linear(double min, double max, int buckets) {
+        return new DoubleHistogram(min, max, buckets, false);
+    }
+
+    /**
+     * Intervalles dont les bornes forment une suite géométrique de {@code min} à
+     * {@code max} (strictement positif) : chaque intervalle est plus large que le
+     * précédent du même facteur.
+     */
+    public static DoubleHistogram logarithmic(double min, double max, int buckets) {
+        if (min <= 0) {
+            throw new IllegalArgumentException("A logarithmic histogram needs a positive lower bound");
+        }
+        return new DoubleHistogram(min, max, buckets, true);
+    }
+
+    /**
+     * Un histogramme vide ayant les mêmes intervalles.
+     */
+    public DoubleHistogram emptyCopy() {
+        return new DoubleHistogram(min, max, counts.length, logarithmic);
+    }
+
+    public void add(double value) {
+        total++;
+        if (value < min || Double.isNaN(value)) {
+            below++;
+        } else if (value > max) {
+            above++;
+        } else {
+            double position = logarithmic ? Math.log(value / min) : value - min;
+            // La borne supérieure appartient au dernier intervalle
+            counts[Math.min((int) (position * scale), counts.length - 1)]++;
+        }
+    }
+
+    public void merge(DoubleHistogram other) {
+        if (other.min != min || other.max != max || other.logarithmic != logarithmic
+                || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Histograms have different buckets");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        below += other.below;
+        above += other.above;
+        total += other.total;
+    }
+
+    public int bucketCount() {
+        return counts.length;
+    }
+
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    public double lowerBound(int bucket) {
+        return logarithmic ? min * Math.exp(bucket / scale) : min + bucket / scale;
+    }
+
+    public double upperBound(int bucket) {
+        return bucket == counts.length - 1 ? max : lowerBound(bucket + 1);
+    }
+
+    /**
+     * @return Le nombre de valeurs inférieures à la borne basse (ou NaN).
+     */
+    public long below() {
+        return below;
+    }
+
+    /**
+     * @return Le nombre de valeurs supérieures à la borne haute.
+     */
+    public long above() {
+        return above;
+    }
+
+    public long count() {
+        return total;
+    }
+}
@@ -0,0 +1,93 @@
+package fr.istic.vv.stats;
+
+import java.util.Arrays;
+
+/**
+ * Histogramme exact de valeurs entières positives (complexités, nombres de lignes...),
+ * stocké dans un tableau de compteurs indexé par valeur : l'ajout d'une valeur
+ * n'alloue rien tant que le tableau est assez grand, et les valeurs sont parcourues
+ * dans l'ordre croissant. Deux histogrammes partiels, remplis par exemple par des
+ * threads différents, se fusionnent avec {@link #merge(IntHistogram)}.
+ */
+public class IntHistogram {
+
+    private long[] counts = new long[32];
+    private long total;
+    private int min = Integer.MAX_VALUE;
+    private int max = -1;
+
+    public void add(int value) {
+        add(value, 1);
+    }
+
+    public void add(int value, long count) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        if (value >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, value + 1));
+        }
+        counts[value] += count;
+        total += count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(IntHistogram other) {
+        for (int value = other.min; value <= other.max; value++) {
+            if (other.counts[value] > 0) {
+                add(value, other.counts[value]);
+            }
+        }
+    }
+
+    /**
+     * @return Le nombre de valeurs ajoutées.
+     */
+    public long count() {
+        return total;
+    }
+
+    /**
+     * @return Le nombre d'occurrences de la valeur.
+     */
+    public long count(int value) {
+        return value >= 0 && value < counts.length ? counts[value] : 0;
+    }
+
+    /**
+     * @return La plus petite valeur ajoutée, ou -1 si l'histogramme est vide.
+     */
+    public int min() {
+        return total == 0 ? -1 : min;
+    }
+
+    /**
+     * @return La plus grande valeur ajoutée, ou -1 si l'histogramme est vide.
+     */
+    public int max() {
+        return max;
+    }
+
+    /**
+     * Quantile exact par la méthode du rang le plus proche : la plus petite valeur
+     * dont la fréquence cumulée atteint {@code q} × nombre de valeurs.
+     *
+     * @param q Le quantile, entre 0 et 1.
+     * @return La valeur du quantile, ou -1 si l'histogramme est vide.
+     */
+    public int quantile(double q) {
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long cumulated = 0;
+        for (int value = min; value < max; value++) {
+            cumulated += counts[value];
+            if (cumulated >= rank) {
+                return value;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,157 @@
+package fr.istic.vv.stats;
+
+import java.util.Arrays;
+
+/**
+ * Esquisse de quantiles en mémoire constante pour un flux non borné de valeurs
+ * positives ou nulles, à erreur relative garantie (à la manière de DDSketch).
+ * <p>
+ * Une valeur {@code v} est comptée dans l'intervalle {@code ceil(log(v) / log(γ))},
+ * avec {@code γ = (1 + α) / (1 - α)} : tout quantile est restitué à une erreur
+ * relative {@code α} près. Les compteurs occupent une fenêtre d'au plus
+ * {@code maxBuckets} intervalles consécutifs ; si les valeurs s'étalent au-delà,
+ * les intervalles les plus bas sont fusionnés, ce qui ne dégrade que les petits
+ * quantiles. Deux esquisses de même précision se fusionnent avec
+ * {@link #merge(QuantileSketch)}.
+ */
+public class QuantileSketch {
+
+    private static final double DEFAULT_ACCURACY = 0.01;
+    private static final int DEFAULT_MAX_BUCKETS = 2048;
+    // En dessous, les valeurs sont comptées comme nulles
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final long[] counts;
+    private int base;
+    private long zeros;
+    private long total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param accuracy   L'erreur relative garantie, par exemple 0.01 pour 1 %.
+     * @param maxBuckets Le nombre maximal de compteurs, qui borne la mémoire utilisée.
+     */
+    public QuantileSketch(double accuracy, int maxBuckets) {
+        if (!(accuracy > 0 && accuracy < 1) || maxBuckets < 1) {
+            throw new IllegalArgumentException("Invalid sketch accuracy or size");
+        }
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+        this.counts = new long[maxBuckets];
+    }
+
+    public void add(double value) {
+        if (value < 0 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Invalid value: " + value);
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < MIN_INDEXABLE) {
+            zeros++;
+            total++;
+        } else {
+            addToBucket((int) Math.ceil(Math.log(value) / logGamma), 1);
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Sketches have different accuracies");
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                addToBucket(other.base + i, other.counts[i]);
+            }
+        }
+        zeros += other.zeros;
+        total += other.zeros;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void addToBucket(int index, long count) {
+        if (total == zeros) {
+            // Première valeur non nulle : la fenêtre est centrée sur elle
+            base = index - counts.length / 2;
+        }
+        if (index < base) {
+            int shift = base - index;
+            int top = highestBucket();
+            if (top + shift < counts.length) {
+                System.arraycopy(counts, 0, counts, shift, top + 1);
+                Arrays.fill(counts, 0, shift, 0);
+                base = index;
+            } else {
+                index = base;
+            }
+        } else if (index >= base + counts.length) {
+            int shift = index - (base + counts.length) + 1;
+            long collapsed = 0;
+            for (int i = 0; i < Math.min(shift, counts.length); i++) {
+                collapsed += counts[i];
+            }
+            if (shift < counts.length) {
+                System.arraycopy(counts, shift, counts, 0, counts.length - shift);
+                Arrays.fill(counts, counts.length - shift, counts.length, 0);
+            } else {
+                Arrays.fill(counts, 0);
+            }
+            counts[0] += collapsed;
+            base += shift;
+        }
+        counts[index - base] += count;
+        total += count;
+    }
+
+    private int highestBucket() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /**
+     * @return La plus grande valeur ajoutée (exacte), ou NaN si l'esquisse est vide.
+     */
+    public double max() {
+        return total == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @param q Le quantile, entre 0 et 1.
+     * @return Une estimation du quantile à l'erreur relative près, ou NaN si l'esquisse est vide.
+     */
+    public double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        if (rank <= zeros) {
+            return min;
+        }
+        long cumulated = zeros;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                double estimate = 2 * Math.pow(gamma, base + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+}
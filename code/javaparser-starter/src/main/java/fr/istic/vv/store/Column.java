@@ -0,0 +1,120 @@
+package fr.istic.vv.store;
+
+import fr.istic.vv.io.ChannelOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Une colonne de valeurs primitives de largeur fixe, stockée dans son propre fichier.
+ * Les lectures passent par une projection mémoire du fichier, les ajouts par un
+ * tampon écrit à la fin du fichier.
+ * <p>
+ * Une projection est limitée à 2 Go : le fichier est projeté par morceaux de
+ * {@value #CHUNK_BYTES} octets, un multiple de chaque largeur, pour qu'aucune valeur
+ * ne soit à cheval sur deux morceaux. Quand la colonne grandit, seul le dernier
+ * morceau est projeté de nouveau, et les suivants ajoutés.
+ */
+class Column implements Closeable {
+
+    static final int CHUNK_SHIFT = 30;
+    static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+    private final FileChannel channel;
+    private final int width;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[1];
+    private int chunkCount;
+    private long mappedBytes;
+    private ChannelOutput appender;
+
+    Column(Path file, int width) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.width = width;
+    }
+
+    /**
+     * Oublie les lignes écrites après la dernière validation (écriture interrompue)
+     * et projette les lignes validées en mémoire.
+     */
+    void open(long rows) throws IOException {
+        discard(rows);
+        extend(rows);
+    }
+
+    /**
+     * Abandonne les lignes ajoutées après les {@code rows} premières : celles encore
+     * dans le tampon comme celles déjà écrites dans le fichier.
+     */
+    void discard(long rows) throws IOException {
+        appender = null;
+        if (channel.size() > rows * width) {
+            channel.truncate(rows * width);
+        }
+    }
+
+    /**
+     * Projette les lignes ajoutées depuis la projection précédente : le dernier
+     * morceau, s'il était incomplet, est projeté de nouveau, les autres sont gardés.
+     */
+    void extend(long rows) throws IOException {
+        long size = rows * width;
+        if (size <= mappedBytes) {
+            return;
+        }
+        int first = chunkCount == 0 || (mappedBytes & CHUNK_MASK) == 0 ? chunkCount : chunkCount - 1;
+        int last = (int) ((size - 1) >>> CHUNK_SHIFT);
+        if (last >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(last + 1, chunks.length * 2));
+        }
+        for (int c = first; c <= last; c++) {
+            long start = (long) c << CHUNK_SHIFT;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_BYTES, size - start));
+        }
+        chunkCount = last + 1;
+        mappedBytes = size;
+    }
+
+    ChannelOutput appender() throws IOException {
+        if (appender == null) {
+            channel.position(channel.size());
+            appender = new ChannelOutput(channel, 16 * 1024, false);
+        }
+        return appender;
+    }
+
+    /**
+     * Écrit les lignes en attente et attend qu'elles soient sur le disque.
+     */
+    void flush() throws IOException {
+        if (appender != null) {
+            appender.flush();
+            appender = null;
+            channel.force(false);
+        }
+    }
+
+    byte getByte(long row) {
+        return chunks[(int) (row >>> CHUNK_SHIFT)].get((int) (row & CHUNK_MASK));
+    }
+
+    int getInt(long row) {
+        long position = row * width;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    double getDouble(long row) {
+        long position = row * width;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getDouble((int) (position & CHUNK_MASK));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
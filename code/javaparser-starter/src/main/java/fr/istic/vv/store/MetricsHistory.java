@@ -0,0 +1,104 @@
+package fr.istic.vv.store;
+
+import fr.istic.vv.report.ReportFormat;
+import fr.istic.vv.report.ReportSink;
+import fr.istic.vv.stats.IntHistogram;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Interroge l'historique des métriques enregistré avec {@code Main --store}.
+ * <pre>
+ * MetricsHistory &lt;store&gt; commits
+ * MetricsHistory &lt;store&gt; histogram &lt;commit&gt;
+ * MetricsHistory &lt;store&gt; regressions &lt;from-commit&gt; &lt;to-commit&gt; [count]
+ * </pre>
+ */
+public class MetricsHistory {
+
+    private static final int DEFAULT_REGRESSIONS = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        try (MetricsStore store = MetricsStore.open(Paths.get(args[0]));
+             ReportSink sink = ReportFormat.TEXT.open(null)) {
+            switch (args[1]) {
+                case "commits":
+                    for (int c = 0; c < store.commitCount(); c++) {
+                        sink.aggregate("commit", store.commitName(c)).end();
+                    }
+                    break;
+                case "histogram":
+                    if (args.length != 3) {
+                        usage();
+                    }
+                    IntHistogram histogram = store.complexityHistogram(commit(store, args[2]));
+                    for (int complexity = 0; complexity <= histogram.max(); complexity++) {
+                        if (histogram.count(complexity) > 0) {
+                            sink.aggregate("complexityBucket", args[2])
+                                    .field("complexity", complexity)
+                                    .field("methods", histogram.count(complexity))
+                                    .end();
+                        }
+                    }
+                    if (histogram.count() > 0) {
+                        sink.aggregate("complexitySummary", args[2])
+                                .field("methods", histogram.count())
+                                .field("p50", histogram.quantile(0.5))
+                                .field("p90", histogram.quantile(0.9))
+                                .field("p99", histogram.quantile(0.99))
+                                .field("max", histogram.max())
+                                .end();
+                    }
+                    break;
+                case "regressions":
+                    if (args.length < 4) {
+                        usage();
+                    }
+                    int limit = args.length > 4 ? count(args[4]) : DEFAULT_REGRESSIONS;
+                    for (Regression regression : store.topRegressions(commit(store, args[2]), commit(store, args[3]), limit)) {
+                        sink.aggregate("regression", regression.getSignature())
+                                .field("before", regression.getBefore())
+                                .field("after", regression.getAfter())
+                                .end();
+                    }
+                    break;
+                default:
+                    usage();
+            }
+        }
+    }
+
+    private static int commit(MetricsStore store, String name) {
+        int commit = store.findCommit(name);
+        if (commit < 0) {
+            System.err.println("Unknown commit: " + name);
+            System.exit(2);
+        }
+        return commit;
+    }
+
+    private static int count(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 1) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // signalé ci-dessous
+        }
+        System.err.println("Invalid count: " + value + " (expected a positive integer)");
+        System.exit(1);
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java MetricsHistory <store> commits");
+        System.err.println("       java MetricsHistory <store> histogram <commit>");
+        System.err.println("       java MetricsHistory <store> regressions <from-commit> <to-commit> [count]");
+        System.exit(1);
+    }
+}
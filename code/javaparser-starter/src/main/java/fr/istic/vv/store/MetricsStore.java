@@ -0,0 +1,362 @@
+package fr.istic.vv.store;
+
+import fr.istic.vv.graph.SymbolTable;
+import fr.istic.vv.io.ChannelOutput;
+import fr.istic.vv.stats.IntHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Historique des métriques d'un projet, commit après commit, stocké en colonnes.
+ * <p>
+ * Chaque ligne décrit une méthode (complexité cyclomatique) ou une classe (cohésion)
+ * à un commit donné. Les colonnes sont des fichiers de valeurs de largeur fixe,
+ * projetés en mémoire pour les requêtes :
+ * <pre>
+ * kind.col        octet : {@link #METHOD} ou {@link #TYPE}
+ * symbol.col      int   : identifiant de la signature ou du nom de classe
+ * commit.col      int   : numéro du commit
+ * complexity.col  int   : complexité cyclomatique, -1 pour une classe
+ * cohesion.col    double: cohésion, NaN pour une méthode
+ * loc.col         int   : nombre de lignes de la déclaration
+ * </pre>
+ * Les noms (signatures, classes, commits) sont écrits une seule fois dans
+ * {@code symbols.dict}, une suite de chaînes UTF-8 préfixées par leur longueur ;
+ * leur rang dans le fichier est leur identifiant. {@code commits.idx} associe à
+ * chaque commit l'identifiant de son nom et la fin de ses lignes : les lignes d'un
+ * commit sont contiguës et commencent où s'arrêtent celles du commit précédent.
+ * <p>
+ * Le stockage n'accepte que des ajouts. Un commit n'est visible qu'une fois son
+ * entrée écrite dans l'index, en dernier : les lignes d'un ajout interrompu sont
+ * ignorées puis effacées à la réouverture, comme un nom écrit en partie à la fin du
+ * dictionnaire.
+ */
+public class MetricsStore implements Closeable {
+
+    public static final byte METHOD = 0;
+    public static final byte TYPE = 1;
+
+    private static final int INDEX_ENTRY = Integer.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final SymbolTable symbols = new SymbolTable();
+    private final Map<Integer, Integer> commitsByName = new HashMap<>();
+    private final Column kind;
+    private final Column symbol;
+    private final Column commit;
+    private final Column complexity;
+    private final Column cohesion;
+    private final Column loc;
+    private final List<Column> columns;
+    private final FileChannel index;
+    private int[] commitNames = new int[16];
+    private long[] commitEnds = new long[16];
+    private int commitCount;
+    private int persistedSymbols;
+    private Commit pending;
+
+    private MetricsStore(Path directory) throws IOException {
+        this.directory = directory;
+        kind = new Column(directory.resolve("kind.col"), Byte.BYTES);
+        symbol = new Column(directory.resolve("symbol.col"), Integer.BYTES);
+        commit = new Column(directory.resolve("commit.col"), Integer.BYTES);
+        complexity = new Column(directory.resolve("complexity.col"), Integer.BYTES);
+        cohesion = new Column(directory.resolve("cohesion.col"), Double.BYTES);
+        loc = new Column(directory.resolve("loc.col"), Integer.BYTES);
+        columns = Arrays.asList(kind, symbol, commit, complexity, cohesion, loc);
+        index = FileChannel.open(directory.resolve("commits.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Ouvre le stockage d'un répertoire, en le créant s'il n'existe pas.
+     */
+    public static MetricsStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MetricsStore store = new MetricsStore(directory);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        Path dictionary = directory.resolve("symbols.dict");
+        if (Files.exists(dictionary)) {
+            try (FileChannel channel = FileChannel.open(dictionary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int complete = 0;
+                while (buffer.hasRemaining()) {
+                    int length = readVarInt(buffer);
+                    if (length > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    symbols.intern(new String(bytes, StandardCharsets.UTF_8));
+                    complete = buffer.position();
+                }
+                // Fin d'un ajout interrompu : les noms suivants doivent suivre la dernière entrée complète
+                if (complete < channel.size()) {
+                    channel.truncate(complete);
+                }
+            }
+        }
+        persistedSymbols = symbols.size();
+
+        long count = index.size() / INDEX_ENTRY;
+        index.truncate(count * INDEX_ENTRY);
+        ByteBuffer entries = index.map(FileChannel.MapMode.READ_ONLY, 0, count * INDEX_ENTRY);
+        for (long e = 0; e < count; e++) {
+            addCommit(entries.getInt(), entries.getLong());
+        }
+        for (Column column : columns) {
+            column.open(rowCount());
+        }
+    }
+
+    private void addCommit(int name, long end) {
+        if (commitCount == commitNames.length) {
+            commitNames = Arrays.copyOf(commitNames, commitCount * 2);
+            commitEnds = Arrays.copyOf(commitEnds, commitCount * 2);
+        }
+        commitNames[commitCount] = name;
+        commitEnds[commitCount] = end;
+        commitsByName.put(name, commitCount++);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; buffer.hasRemaining(); shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    public long rowCount() {
+        return commitCount == 0 ? 0 : commitEnds[commitCount - 1];
+    }
+
+    public int commitCount() {
+        return commitCount;
+    }
+
+    public String commitName(int commit) {
+        return symbols.name(commitNames[commit]);
+    }
+
+    /**
+     * @return Le numéro du commit portant ce nom, ou -1 s'il n'a pas été enregistré.
+     */
+    public int findCommit(String name) {
+        Integer commit = commitsByName.get(symbols.find(name));
+        return commit == null ? -1 : commit;
+    }
+
+    private long firstRow(int commit) {
+        return commit == 0 ? 0 : commitEnds[commit - 1];
+    }
+
+    /**
+     * Commence l'enregistrement des métriques d'un commit. Les lignes ne deviennent
+     * visibles qu'après {@link Commit#commit()}. Un seul commit est en cours à la fois :
+     * les lignes d'un commit commencé mais jamais validé (ajout interrompu par une
+     * erreur) sont abandonnées, pour que les lignes du nouveau commit suivent
+     * directement celles du dernier commit validé.
+     *
+     * @param name Le nom du commit, qui ne doit pas déjà être enregistré.
+     */
+    public Commit append(String name) throws IOException {
+        if (findCommit(name) >= 0) {
+            throw new IllegalArgumentException("Commit already recorded: " + name);
+        }
+        if (pending != null) {
+            pending = null;
+            for (Column column : columns) {
+                column.discard(rowCount());
+            }
+        }
+        pending = new Commit(name);
+        return pending;
+    }
+
+    /**
+     * Les lignes d'un commit en cours d'enregistrement. Il n'est plus utilisable une
+     * fois validé ou remplacé par un autre appel à {@link #append(String)}.
+     */
+    public class Commit {
+        private final int name;
+        private final int id = commitCount;
+        private long rows;
+
+        private Commit(String name) {
+            this.name = symbols.intern(name);
+        }
+
+        public Commit method(String signature, int complexityValue, int lines) throws IOException {
+            return row(METHOD, signature, complexityValue, Double.NaN, lines);
+        }
+
+        public Commit type(String name, double cohesionValue, int lines) throws IOException {
+            return row(TYPE, name, -1, cohesionValue, lines);
+        }
+
+        private Commit row(byte kindValue, String name, int complexityValue, double cohesionValue, int lines)
+                throws IOException {
+            checkPending();
+            kind.appender().writeByte(kindValue);
+            symbol.appender().writeInt(symbols.intern(name));
+            commit.appender().writeInt(id);
+            complexity.appender().writeInt(complexityValue);
+            cohesion.appender().writeDouble(cohesionValue);
+            loc.appender().writeInt(lines);
+            rows++;
+            return this;
+        }
+
+        /**
+         * Écrit les nouveaux noms et les colonnes, puis valide le commit dans l'index.
+         * Le dictionnaire et chaque colonne sont forcés sur le disque avant l'index :
+         * après un arrêt brutal, un commit présent dans l'index a toutes ses lignes.
+         */
+        public void commit() throws IOException {
+            checkPending();
+            try (FileChannel channel = FileChannel.open(directory.resolve("symbols.dict"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ChannelOutput dictionary = new ChannelOutput(channel, 16 * 1024, false);
+                for (int s = persistedSymbols; s < symbols.size(); s++) {
+                    dictionary.writeString(symbols.name(s));
+                }
+                dictionary.flush();
+                channel.force(false);
+            }
+            persistedSymbols = symbols.size();
+            for (Column column : columns) {
+                column.flush();
+            }
+            long end = rowCount() + rows;
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY).putInt(name).putLong(end);
+            entry.flip();
+            long position = (long) commitCount * INDEX_ENTRY;
+            while (entry.hasRemaining()) {
+                position += index.write(entry, position);
+            }
+            index.force(false);
+            addCommit(name, end);
+            pending = null;
+            for (Column column : columns) {
+                column.extend(end);
+            }
+        }
+
+        private void checkPending() {
+            if (pending != this) {
+                throw new IllegalStateException("Commit no longer pending: " + symbols.name(name));
+            }
+        }
+    }
+
+    /**
+     * Histogramme des complexités cyclomatiques des méthodes d'un commit.
+     *
+     */
+    public IntHistogram complexityHistogram(int commitId) {
+        IntHistogram histogram = new IntHistogram();
+        for (long row = firstRow(commitId); row < commitEnds[commitId]; row++) {
+            if (kind.getByte(row) == METHOD) {
+                histogram.add(complexity.getInt(row));
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Les méthodes dont la complexité cyclomatique a le plus augmenté entre deux
+     * commits, par augmentation décroissante. Les méthodes absentes de l'un des deux
+     * commits sont ignorées.
+     *
+     * @param limit Le nombre maximal de méthodes, positif ou nul.
+     */
+    public List<Regression> topRegressions(int from, int to, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        int[] before = new int[symbols.size()];
+        Arrays.fill(before, -1);
+        for (long row = firstRow(from); row < commitEnds[from]; row++) {
+            if (kind.getByte(row) == METHOD) {
+                before[symbol.getInt(row)] = complexity.getInt(row);
+            }
+        }
+        // Les meilleures augmentations, triées par ordre décroissant (insertion)
+        int[] topSymbols = new int[limit];
+        int[] topDeltas = new int[limit];
+        int found = 0;
+        for (long row = firstRow(to); row < commitEnds[to]; row++) {
+            if (kind.getByte(row) != METHOD) {
+                continue;
+            }
+            int id = symbol.getInt(row);
+            if (before[id] < 0) {
+                continue;
+            }
+            int delta = complexity.getInt(row) - before[id];
+            if (delta <= 0 || (found == limit && delta <= topDeltas[limit - 1])) {
+                continue;
+            }
+            int position = found < limit ? found++ : limit - 1;
+            while (position > 0 && topDeltas[position - 1] < delta) {
+                topDeltas[position] = topDeltas[position - 1];
+                topSymbols[position] = topSymbols[position - 1];
+                position--;
+            }
+            topDeltas[position] = delta;
+            topSymbols[position] = id;
+        }
+        List<Regression> regressions = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            int id = topSymbols[i];
+            regressions.add(new Regression(symbols.name(id), before[id], before[id] + topDeltas[i]));
+        }
+        return regressions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Column column : columns) {
+            try {
+                column.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        index.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package fr.istic.vv.store;
+
+/**
+ * L'évolution de la complexité cyclomatique d'une méthode entre deux commits.
+ */
+public class Regression {
+
+    private final String signature;
+    private final int before;
+    private final int after;
+
+    Regression(String signature, int before, int after) {
+        this.signature = signature;
+        this.before = before;
+        this.after = after;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public int getBefore() {
+        return before;
+    }
+
+    public int getAfter() {
+        return after;
+    }
+
+    public int getDelta() {
+        return after - before;
+    }
+}
@@ -0,0 +1,88 @@
+package fr.istic.vv.Exercise6;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LCOM1, LCOM4, TCC et LCC sur des classes dont les valeurs se calculent à la main.
+ */
+class CohesionMetricsTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static CohesionMetrics compute(String source) {
+        ClassOrInterfaceDeclaration cls = StaticJavaParser.parse(source)
+                .findFirst(ClassOrInterfaceDeclaration.class)
+                .orElseThrow(IllegalStateException::new);
+        return CohesionMetrics.compute(cls);
+    }
+
+    /**
+     * m1, m2 et m3 sont reliées par a puis b ; m5 appelle m4 sans utiliser de champ ;
+     * m6 n'utilise que son paramètre, qui masque le champ c.
+     */
+    @Test
+    void pairsAndComponents() {
+        CohesionMetrics metrics = compute("class C {\n"
+                + "    int a, b, c;\n"
+                + "    int m1() { return a; }\n"
+                + "    int m2() { return a + this.b; }\n"
+                + "    int m3() { return b; }\n"
+                + "    int m4() { return c; }\n"
+                + "    int m5() { return m4(); }\n"
+                + "    int m6(int c) { return c; }\n"
+                + "}");
+
+        assertEquals(6, metrics.getMethods());
+        assertEquals(3, metrics.getFields());
+        // 15 paires, dont (m1, m2) et (m2, m3) partagent un champ
+        assertEquals(13, metrics.getLcom1());
+        assertEquals(2.0 / 15, metrics.getTcc(), DELTA);
+        // m1 et m3 sont reliées indirectement par m2
+        assertEquals(3.0 / 15, metrics.getLcc(), DELTA);
+        // {m1, m2, m3}, {m4, m5} par l'appel, {m6}
+        assertEquals(3, metrics.getLcom4());
+        assertEquals(4.0 / 6, metrics.getRatio(), DELTA);
+    }
+
+    /**
+     * Une chaîne de 70 méthodes, la i-ième utilisant les champs i et i + 1 : les
+     * matrices de bits s'étendent sur deux mots.
+     */
+    @Test
+    void chainAcrossSeveralWords() {
+        int count = 70;
+        StringBuilder source = new StringBuilder("class Chain {\n");
+        for (int i = 0; i <= count; i++) {
+            source.append("    int f").append(i).append(";\n");
+        }
+        for (int i = 0; i < count; i++) {
+            source.append("    int m").append(i).append("() { return f").append(i)
+                    .append(" + f").append(i + 1).append("; }\n");
+        }
+        CohesionMetrics metrics = compute(source.append("}").toString());
+
+        long pairs = (long) count * (count - 1) / 2;
+        assertEquals(count, metrics.getMethods());
+        assertEquals(pairs - (count - 1), metrics.getLcom1());
+        assertEquals((count - 1) / (double) pairs, metrics.getTcc(), DELTA);
+        assertEquals(1.0, metrics.getLcc(), DELTA);
+        assertEquals(1, metrics.getLcom4());
+        assertEquals(1.0, metrics.getRatio(), DELTA);
+    }
+
+    @Test
+    void classWithoutMethods() {
+        CohesionMetrics metrics = compute("class Empty { int a; }");
+
+        assertEquals(0, metrics.getMethods());
+        assertEquals(1, metrics.getFields());
+        assertEquals(0, metrics.getLcom1());
+        assertEquals(0, metrics.getLcom4());
+        assertEquals(0.0, metrics.getTcc(), DELTA);
+        assertEquals(0.0, metrics.getLcc(), DELTA);
+    }
+}
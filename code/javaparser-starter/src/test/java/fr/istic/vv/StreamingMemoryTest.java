@@ -0,0 +1,136 @@
+package fr.istic.vv;
+
+import com.github.javaparser.utils.SourceRoot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vérifie que l'analyse en flux tient dans un tas plafonné : chaque fichier est parsé,
+ * analysé puis oublié, et le tas nécessaire ne dépend que du nombre de threads de
+ * parsing, pas de la taille du projet.
+ * <p>
+ * L'analyse tourne dans une JVM séparée, lancée avec {@value #MAX_HEAP} de tas. Le
+ * témoin garde au contraire tous les AST du même projet en mémoire : il doit manquer
+ * de mémoire sous le même plafond, ce qui prouve que le plafond est significatif.
+ */
+class StreamingMemoryTest {
+
+    private static final String MAX_HEAP = "-Xmx64m";
+    private static final int PACKAGES = 20;
+    private static final int CLASSES_PER_PACKAGE = 100;
+    private static final int METHODS_PER_CLASS = 20;
+
+    @TempDir
+    static Path workDirectory;
+
+    private static Path corpus;
+
+    @BeforeAll
+    static void generateCorpus() throws IOException {
+        corpus = workDirectory.resolve("corpus");
+        for (int p = 0; p < PACKAGES; p++) {
+            Path directory = Files.createDirectories(corpus.resolve("pkg" + p));
+            for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+                try (Writer out = Files.newBufferedWriter(directory.resolve("C" + c + ".java"), StandardCharsets.UTF_8)) {
+                    writeClass(out, p, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Une classe publique avec un getter et des méthodes de complexité 4, qui dépend
+     * de la classe suivante de son package.
+     */
+    private static void writeClass(Writer out, int p, int c) throws IOException {
+        out.write("package pkg" + p + ";\n");
+        out.write("public class C" + c + " {\n");
+        out.write("    private int x;\n");
+        out.write("    private C" + ((c + 1) % CLASSES_PER_PACKAGE) + " next;\n");
+        out.write("    public int getX() { return x; }\n");
+        for (int m = 0; m < METHODS_PER_CLASS; m++) {
+            out.write("    public int m" + m + "(int a) { if (a > " + m + ") { for (int i = 0; i < a; i++) { a += i + x; } }"
+                    + " return a > 0 ? a : -a; }\n");
+        }
+        out.write("}\n");
+    }
+
+    @Test
+    void streamingAnalysisFitsInCappedHeap() throws Exception {
+        Path report = workDirectory.resolve("report.jsonl");
+        Result result = runJava(Main.class.getName(), corpus.toString(), "--threads", "2",
+                "--format", "jsonl", "--aggregates-only", "--output", report.toString());
+
+        assertEquals(0, result.exitCode, result.output);
+        String summary = Files.readAllLines(report, StandardCharsets.UTF_8).stream()
+                .filter(line -> line.contains("\"complexitySummary\""))
+                .findFirst()
+                .orElse("");
+        int methods = PACKAGES * CLASSES_PER_PACKAGE * (METHODS_PER_CLASS + 1);
+        assertTrue(summary.contains("\"methods\":" + methods), summary);
+    }
+
+    @Test
+    void retainingEveryAstExceedsTheSameHeap() throws Exception {
+        Result result = runJava(RetainAllUnits.class.getName(), corpus.toString());
+
+        assertNotEquals(0, result.exitCode, result.output);
+        assertTrue(result.output.contains("OutOfMemoryError"), result.output);
+    }
+
+    /**
+     * Le témoin : parse tout le projet en gardant chaque CompilationUnit, comme le
+     * faisaient les passes avant l'analyse en flux.
+     */
+    static final class RetainAllUnits {
+        public static void main(String[] args) throws IOException {
+            SourceRoot root = new SourceRoot(Paths.get(args[0]));
+            root.tryToParse();
+            System.out.println(root.getCompilationUnits().size() + " units retained");
+        }
+    }
+
+    private static Result runJava(String mainClass, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add(MAX_HEAP);
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command)
+                .directory(workDirectory.toFile())
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = process.getInputStream().readAllBytes();
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES), "analysis did not finish");
+        return new Result(process.exitValue(), new String(output, StandardCharsets.UTF_8));
+    }
+
+    private static final class Result {
+        final int exitCode;
+        final String output;
+
+        Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+}
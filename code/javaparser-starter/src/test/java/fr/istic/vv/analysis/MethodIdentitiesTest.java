@@ -0,0 +1,100 @@
+package fr.istic.vv.analysis;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Propriétaires (types imbriqués, anonymes, locaux, constantes d'énumération),
+ * effacement des paramètres et index de surcharge.
+ */
+class MethodIdentitiesTest {
+
+    private static final String SOURCE = "package p;\n"
+            + "import java.util.List;\n"
+            + "public class Outer<T extends Comparable<T>> {\n"
+            + "    void plain(int a, String... rest) {}\n"
+            + "    <U> U generic(U u, T t, List<String> list, int[][] grid, java.util.Map.Entry<T, U> e) { return u; }\n"
+            + "    void over(int a) {}\n"
+            + "    void over(long a) {}\n"
+            + "    void same(List<String> a) {}\n"
+            + "    void same(List<Integer> a) {}\n"
+            + "    class Inner { void run() {} }\n"
+            + "    void make() {\n"
+            + "        Runnable first = new Runnable() { public void run() {} };\n"
+            + "        class Local { void work() {} }\n"
+            + "        Runnable second = new Runnable() { public void run() {} };\n"
+            + "    }\n"
+            + "    enum Mode {\n"
+            + "        A { void apply() {} },\n"
+            + "        B;\n"
+            + "        void apply() {}\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final CompilationUnit UNIT = StaticJavaParser.parse(SOURCE);
+    private static final MethodIdentities IDENTITIES = MethodIdentities.of(UNIT);
+
+    private static List<MethodDeclaration> methods() {
+        return UNIT.findAll(MethodDeclaration.class);
+    }
+
+    private static MethodDeclaration method(int index) {
+        return methods().get(index);
+    }
+
+    @Test
+    void signaturesOfEveryOwnerKind() {
+        List<String> signatures = methods().stream().map(IDENTITIES::signature).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(
+                "p.Outer.plain(int, String[])",
+                "p.Outer.generic(Object, Comparable, List, int[][], java.util.Map.Entry)",
+                "p.Outer.over(int)",
+                "p.Outer.over(long)",
+                "p.Outer.same(List)",
+                // Même effacement, dans un source invalide : l'index de surcharge les distingue
+                "p.Outer.same(List)#1",
+                "p.Outer.Inner.run()",
+                "p.Outer.make()",
+                // Classes anonymes et locales numérotées comme par javac
+                "p.Outer$1.run()",
+                "p.Outer$1Local.work()",
+                "p.Outer$2.run()",
+                // JavaParser liste les membres d'une énumération avant ses constantes
+                "p.Outer.Mode.apply()",
+                "p.Outer.Mode$1.apply()"), signatures);
+    }
+
+    @Test
+    void ownersAndOverloadIndexes() {
+        assertEquals("p.Outer", IDENTITIES.owner(method(0)));
+        assertEquals("p.Outer.Inner", IDENTITIES.owner(method(6)));
+        assertEquals("p.Outer$1Local", IDENTITIES.owner(method(9)));
+        assertEquals("p.Outer.Mode$1", IDENTITIES.owner(method(12)));
+
+        assertEquals(0, IDENTITIES.overloadIndex(method(2)));
+        assertEquals(1, IDENTITIES.overloadIndex(method(3)));
+        assertEquals(1, IDENTITIES.overloadIndex(method(5)));
+        // run() de deux classes anonymes différentes : pas de surcharge
+        assertEquals(0, IDENTITIES.overloadIndex(method(10)));
+    }
+
+    @Test
+    void defaultPackageAndForeignMethod() {
+        CompilationUnit other = StaticJavaParser.parse("class Top { void m(Object... all) {} }");
+        MethodIdentities identities = MethodIdentities.of(other);
+        MethodDeclaration m = other.findFirst(MethodDeclaration.class).orElseThrow(IllegalStateException::new);
+
+        assertEquals("Top.m(Object[])", identities.signature(m));
+        assertThrows(IllegalArgumentException.class, () -> identities.signature(method(0)));
+    }
+}
@@ -0,0 +1,71 @@
+package fr.istic.vv.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Intervalles linéaires et logarithmiques, valeurs hors bornes et fusion.
+ */
+class DoubleHistogramTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void linearBuckets() {
+        DoubleHistogram histogram = DoubleHistogram.linear(0, 1, 10);
+        histogram.add(0);
+        histogram.add(0.15);
+        histogram.add(0.19);
+        histogram.add(1);
+        histogram.add(-0.1);
+        histogram.add(Double.NaN);
+        histogram.add(1.5);
+
+        assertEquals(7, histogram.count());
+        assertEquals(1, histogram.count(0));
+        assertEquals(2, histogram.count(1));
+        // La borne supérieure appartient au dernier intervalle
+        assertEquals(1, histogram.count(9));
+        assertEquals(2, histogram.below());
+        assertEquals(1, histogram.above());
+        assertEquals(0.1, histogram.lowerBound(1), DELTA);
+        assertEquals(0.2, histogram.upperBound(1), DELTA);
+        assertEquals(1.0, histogram.upperBound(9), DELTA);
+    }
+
+    @Test
+    void logarithmicBuckets() {
+        DoubleHistogram histogram = DoubleHistogram.logarithmic(1, 1000, 3);
+        histogram.add(2);
+        histogram.add(50);
+        histogram.add(999);
+
+        assertEquals(10, histogram.lowerBound(1), DELTA);
+        assertEquals(100, histogram.upperBound(1), DELTA);
+        for (int bucket = 0; bucket < 3; bucket++) {
+            assertEquals(1, histogram.count(bucket), "bucket " + bucket);
+        }
+        assertThrows(IllegalArgumentException.class, () -> DoubleHistogram.logarithmic(0, 10, 2));
+    }
+
+    @Test
+    void mergeAddsCounts() {
+        DoubleHistogram left = DoubleHistogram.linear(0, 1, 4);
+        DoubleHistogram right = left.emptyCopy();
+        left.add(0.1);
+        left.add(2);
+        right.add(0.1);
+        right.add(0.9);
+        right.add(-1);
+        left.merge(right);
+
+        assertEquals(5, left.count());
+        assertEquals(2, left.count(0));
+        assertEquals(1, left.count(3));
+        assertEquals(1, left.below());
+        assertEquals(1, left.above());
+        assertThrows(IllegalArgumentException.class, () -> left.merge(DoubleHistogram.linear(0, 1, 5)));
+    }
+}
@@ -0,0 +1,74 @@
+package fr.istic.vv.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Quantiles exacts et fusion d'histogrammes partiels.
+ */
+class IntHistogramTest {
+
+    private static IntHistogram of(int from, int to) {
+        IntHistogram histogram = new IntHistogram();
+        for (int value = from; value <= to; value++) {
+            histogram.add(value);
+        }
+        return histogram;
+    }
+
+    @Test
+    void quantilesUseTheNearestRank() {
+        IntHistogram histogram = of(1, 100);
+
+        assertEquals(100, histogram.count());
+        assertEquals(1, histogram.min());
+        assertEquals(100, histogram.max());
+        assertEquals(1, histogram.quantile(0));
+        assertEquals(50, histogram.quantile(0.5));
+        assertEquals(90, histogram.quantile(0.9));
+        assertEquals(99, histogram.quantile(0.99));
+        assertEquals(100, histogram.quantile(1));
+    }
+
+    @Test
+    void repeatedValuesAreCounted() {
+        IntHistogram histogram = new IntHistogram();
+        histogram.add(3, 8);
+        histogram.add(1000);
+        histogram.add(3);
+
+        assertEquals(10, histogram.count());
+        assertEquals(9, histogram.count(3));
+        assertEquals(0, histogram.count(4));
+        assertEquals(0, histogram.count(-1));
+        assertEquals(3, histogram.quantile(0.9));
+        assertEquals(1000, histogram.quantile(0.91));
+    }
+
+    @Test
+    void mergeEqualsAddingEveryValue() {
+        IntHistogram merged = of(1, 40);
+        merged.merge(of(41, 100));
+        merged.merge(new IntHistogram());
+        IntHistogram whole = of(1, 100);
+
+        assertEquals(whole.count(), merged.count());
+        assertEquals(whole.min(), merged.min());
+        assertEquals(whole.max(), merged.max());
+        for (double q = 0; q <= 1; q += 0.05) {
+            assertEquals(whole.quantile(q), merged.quantile(q), "q = " + q);
+        }
+    }
+
+    @Test
+    void emptyHistogram() {
+        IntHistogram histogram = new IntHistogram();
+
+        assertEquals(-1, histogram.min());
+        assertEquals(-1, histogram.max());
+        assertEquals(-1, histogram.quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.add(-1));
+    }
+}
@@ -0,0 +1,125 @@
+package fr.istic.vv.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Erreur relative des quantiles estimés, par rapport aux quantiles exacts par la
+ * méthode du rang le plus proche, et fusion d'esquisses.
+ */
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+    private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1};
+
+    /**
+     * Des valeurs log-normales, étalées sur plusieurs ordres de grandeur.
+     */
+    private static double[] values(long seed, int count) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(2 * random.nextGaussian() + 3);
+        }
+        return values;
+    }
+
+    private static double exactQuantile(double[] sorted, double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * sorted.length));
+        return sorted[(int) rank - 1];
+    }
+
+    private static void assertWithinAccuracy(double[] values, QuantileSketch sketch, double q) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double exact = exactQuantile(sorted, q);
+        double estimate = sketch.quantile(q);
+        assertTrue(Math.abs(estimate - exact) <= ACCURACY * exact * (1 + 1e-9),
+                "q = " + q + ": " + estimate + " instead of " + exact);
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        double[] values = values(1, 100_000);
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 2048);
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        assertEquals(values.length, sketch.count());
+        for (double q : QUANTILES) {
+            assertWithinAccuracy(values, sketch, q);
+        }
+        assertEquals(Arrays.stream(values).max().getAsDouble(), sketch.max());
+    }
+
+    @Test
+    void mergeMatchesASingleSketch() {
+        double[] left = values(2, 30_000);
+        double[] right = values(3, 50_000);
+        double[] all = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, all, left.length, right.length);
+        QuantileSketch merged = new QuantileSketch();
+        QuantileSketch other = new QuantileSketch();
+        QuantileSketch whole = new QuantileSketch();
+        for (double value : left) {
+            merged.add(value);
+        }
+        for (double value : right) {
+            other.add(value);
+        }
+        for (double value : all) {
+            whole.add(value);
+        }
+        merged.merge(other);
+
+        assertEquals(all.length, merged.count());
+        for (double q : QUANTILES) {
+            assertEquals(whole.quantile(q), merged.quantile(q), "q = " + q);
+            assertWithinAccuracy(all, merged, q);
+        }
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new QuantileSketch(0.05, 2048)));
+    }
+
+    /**
+     * Avec peu de compteurs, les intervalles les plus bas sont fusionnés : seuls les
+     * petits quantiles perdent leur précision.
+     */
+    @Test
+    void collapsingKeepsHighQuantiles() {
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 64);
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        for (double q : new double[] {0.5, 0.9, 0.99, 1}) {
+            assertWithinAccuracy(values, sketch, q);
+        }
+    }
+
+    @Test
+    void zerosAndEmptySketch() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertTrue(Double.isNaN(sketch.max()));
+
+        for (int i = 0; i < 10; i++) {
+            sketch.add(0);
+        }
+        sketch.add(5);
+        assertEquals(0, sketch.quantile(0.5));
+        assertEquals(5, sketch.quantile(1), 5 * ACCURACY);
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(Double.NaN));
+    }
+}
@@ -0,0 +1,128 @@
+package fr.istic.vv.store;
+
+import fr.istic.vv.stats.IntHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Relecture du stockage après réouverture, récupération d'un ajout interrompu et
+ * classement des régressions.
+ */
+class MetricsStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * c1 puis c2 : a() passe de 1 à 4, b() de 2 à 7, c() ne change pas, gone()
+     * disparaît et added() apparaît.
+     */
+    private void recordTwoCommits() throws IOException {
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            store.append("c1")
+                    .method("p.A.a()", 1, 3)
+                    .method("p.A.b()", 2, 5)
+                    .method("p.A.c()", 5, 10)
+                    .method("p.A.gone()", 3, 4)
+                    .type("p.A", 0.5, 40)
+                    .commit();
+            store.append("c2")
+                    .method("p.A.a()", 4, 8)
+                    .method("p.A.b()", 7, 12)
+                    .method("p.A.c()", 5, 10)
+                    .method("p.A.added()", 9, 20)
+                    .type("p.A", 0.25, 60)
+                    .commit();
+        }
+    }
+
+    @Test
+    void commitsSurviveReopening() throws IOException {
+        recordTwoCommits();
+
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            assertEquals(2, store.commitCount());
+            assertEquals("c1", store.commitName(0));
+            assertEquals(1, store.findCommit("c2"));
+            assertEquals(-1, store.findCommit("c3"));
+            assertEquals(10, store.rowCount());
+
+            IntHistogram histogram = store.complexityHistogram(1);
+            assertEquals(4, histogram.count());
+            assertEquals(1, histogram.count(5));
+            assertEquals(9, histogram.max());
+        }
+    }
+
+    @Test
+    void interruptedAppendIsDiscardedOnReopening() throws IOException {
+        recordTwoCommits();
+        // Des lignes écrites sans entrée dans l'index, et un nom écrit en partie
+        Files.write(directory.resolve("kind.col"), new byte[] {0, 0, 0}, StandardOpenOption.APPEND);
+        Files.write(directory.resolve("symbol.col"), new byte[] {1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        Files.write(directory.resolve("symbols.dict"), new byte[] {20, 'p', '.'}, StandardOpenOption.APPEND);
+
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            assertEquals(10, store.rowCount());
+            assertEquals(10, Files.size(directory.resolve("kind.col")));
+            store.append("c3").method("p.A.a()", 6, 8).method("p.B.fresh()", 2, 1).commit();
+        }
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            assertEquals(3, store.commitCount());
+            assertEquals(2, store.findCommit("c3"));
+            assertEquals(12, store.rowCount());
+            List<Regression> regressions = store.topRegressions(1, 2, 10);
+            assertEquals(1, regressions.size());
+            assertEquals("p.A.a()", regressions.get(0).getSignature());
+        }
+    }
+
+    @Test
+    void abandonedCommitLeavesNoRows() throws IOException {
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            store.append("c1").method("p.A.a()", 1, 3).commit();
+            MetricsStore.Commit abandoned = store.append("c2");
+            for (int i = 0; i < 5_000; i++) {
+                abandoned.method("p.A.m" + i + "()", 9, 9);
+            }
+            store.append("c2").method("p.A.a()", 2, 3).commit();
+            assertThrows(IllegalStateException.class, abandoned::commit);
+            assertEquals(2, store.rowCount());
+        }
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            assertEquals(2, store.rowCount());
+            assertEquals(2, store.topRegressions(0, 1, 1).get(0).getAfter());
+        }
+    }
+
+    @Test
+    void regressionsAreSortedByIncrease() throws IOException {
+        recordTwoCommits();
+
+        try (MetricsStore store = MetricsStore.open(directory)) {
+            List<Regression> regressions = store.topRegressions(0, 1, 10);
+            assertEquals(2, regressions.size());
+            assertEquals("p.A.b()", regressions.get(0).getSignature());
+            assertEquals(5, regressions.get(0).getDelta());
+            assertEquals("p.A.a()", regressions.get(1).getSignature());
+            assertEquals(1, regressions.get(1).getBefore());
+            assertEquals(4, regressions.get(1).getAfter());
+
+            List<Regression> top = store.topRegressions(0, 1, 1);
+            assertEquals(1, top.size());
+            assertEquals("p.A.b()", top.get(0).getSignature());
+            assertTrue(store.topRegressions(0, 1, 0).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> store.topRegressions(0, 1, -1));
+        }
+    }
+}